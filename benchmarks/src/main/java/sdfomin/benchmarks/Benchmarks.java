@@ -0,0 +1,26 @@
+package sdfomin.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with the GC profiler, so allocation rates are reported next to times
+ * Arguments are the usual JMH options, for example a regular expression of benchmarks and -p statements=100.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(options.getWarmupIterations().orElse(3))
+                .measurementIterations(options.getMeasurementIterations().orElse(5))
+                .forks(options.getForkCount().orElse(1))
+                .build()).run();
+    }
+}
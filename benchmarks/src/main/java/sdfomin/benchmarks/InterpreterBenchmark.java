@@ -0,0 +1,50 @@
+package sdfomin.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import sdfomin.parser.InterpretException;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsInterpreter;
+import sdfomin.parser.JetBrainsParser;
+
+import java.util.ArrayList;
+
+/**
+ * Execution of parsed programs, programs have no errors, so they are executed to the end
+ */
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"100", "10000"})
+    public int statements;
+
+    @Param({"1", "16"})
+    public int depth;
+
+    private JetBrainsAstNode program;
+
+    @Setup
+    public void setup() {
+        program = new JetBrainsParser(new ProgramGenerator(statements, depth, 0).generate(statements)).parse();
+    }
+
+    /**
+     * output is collected into a list
+     */
+    @Benchmark
+    public ArrayList<Integer> execute() throws InterpretException {
+        return JetBrainsInterpreter.execute(program);
+    }
+
+    /**
+     * output is streamed, so only the interpreter allocates
+     */
+    @Benchmark
+    public void executeToSink(Blackhole blackhole) throws InterpretException {
+        JetBrainsInterpreter.execute(program, blackhole::consume);
+    }
+}
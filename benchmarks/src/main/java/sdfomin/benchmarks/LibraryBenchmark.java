@@ -0,0 +1,55 @@
+package sdfomin.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsAstNodeType;
+import sdfomin.parser.JetBrainsParser;
+import sdfomin.parser.JetBrainsParserLibrary;
+
+/**
+ * Checks of JetBrainsParserLibrary between a program and the same program with one more statement,
+ * as the editor calls them after an edit
+ */
+@State(Scope.Benchmark)
+public class LibraryBenchmark {
+
+    @Param({"100", "10000"})
+    public int statements;
+
+    @Param({"1", "16"})
+    public int depth;
+
+    @Param({"0", "20"})
+    public int errorPercent;
+
+    private JetBrainsAstNode before;
+
+    private JetBrainsAstNode after;
+
+    @Setup
+    public void setup() {
+        String text = new ProgramGenerator(statements, depth, errorPercent).generate(statements);
+        before = new JetBrainsParser(text).parse();
+        after = new JetBrainsParser(text + "if (a) { b; }").parse();
+    }
+
+    @Benchmark
+    public boolean isTreeUpdated() {
+        return JetBrainsParserLibrary.isTreeUpdated(before, after);
+    }
+
+    @Benchmark
+    public boolean isBlockStatementUpdated() {
+        return JetBrainsParserLibrary.isBlockStatementUpdated(before, after);
+    }
+
+    @Benchmark
+    public int countDeepNodes() {
+        return JetBrainsParserLibrary.countDeepNodes(after,
+                node -> node.getType() == JetBrainsAstNodeType.IF_STATEMENT);
+    }
+}
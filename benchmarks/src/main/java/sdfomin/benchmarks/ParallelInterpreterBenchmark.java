@@ -0,0 +1,54 @@
+package sdfomin.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import sdfomin.parser.InterpretException;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsInterpreter;
+import sdfomin.parser.JetBrainsParallelInterpreter;
+import sdfomin.parser.JetBrainsParser;
+
+/**
+ * Execution of wide programs: independent chains of assignments with prints of every chain
+ * Chains run in parallel by JetBrainsParallelInterpreter, one chain is executed sequentially
+ */
+@State(Scope.Benchmark)
+public class ParallelInterpreterBenchmark {
+
+    @Param({"10000", "100000"})
+    public int statements;
+
+    @Param({"1", "64"})
+    public int chains;
+
+    private JetBrainsAstNode program;
+
+    @Setup
+    public void setup() {
+        StringBuilder text = new StringBuilder();
+        for (int chain = 0; chain < chains; ++chain)
+            text.append("@v").append(chain).append(" = ").append(chain).append(";\n");
+        for (int i = 0; i < statements; ++i) {
+            String variable = "v" + i % chains;
+            text.append('@').append(variable).append(" = (").append(variable).append(" * 3 + ").append(i)
+                    .append(") / 7 + ").append(variable).append(" * ").append(variable).append(" / 1000;\n");
+            if (i % 100 == 0)
+                text.append(variable).append(";\n");
+        }
+        program = new JetBrainsParser(text).parse();
+    }
+
+    @Benchmark
+    public void execute(Blackhole blackhole) throws InterpretException {
+        JetBrainsInterpreter.execute(program, blackhole::consume);
+    }
+
+    @Benchmark
+    public void executeParallel(Blackhole blackhole) throws InterpretException {
+        new JetBrainsParallelInterpreter(program).execute(blackhole::consume);
+    }
+}
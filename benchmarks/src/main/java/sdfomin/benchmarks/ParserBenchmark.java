@@ -0,0 +1,49 @@
+package sdfomin.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsParallelParser;
+import sdfomin.parser.JetBrainsParser;
+import sdfomin.parser.JetBrainsSymbolTable;
+
+/**
+ * Parsing of generated programs of different sizes, depths and shares of broken statements
+ */
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    /**
+     * length of a range of the parallel parser, small enough to split the larger programs
+     */
+    private static final int PARALLEL_RANGE = 1 << 14;
+
+    @Param({"100", "10000"})
+    public int statements;
+
+    @Param({"1", "16"})
+    public int depth;
+
+    @Param({"0", "20"})
+    public int errorPercent;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = new ProgramGenerator(statements, depth, errorPercent).generate(statements);
+    }
+
+    @Benchmark
+    public JetBrainsAstNode parse() {
+        return new JetBrainsParser(text).parse();
+    }
+
+    @Benchmark
+    public JetBrainsAstNode parseParallel() {
+        return new JetBrainsParallelParser(text, new JetBrainsSymbolTable(), PARALLEL_RANGE).parse();
+    }
+}
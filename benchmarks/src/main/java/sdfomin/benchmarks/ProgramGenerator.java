@@ -0,0 +1,125 @@
+package sdfomin.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates programs for benchmarks, the same seed gives the same program
+ * Every top-level statement is a chain of nested ifs and blocks of the given depth.
+ * Some statements can be broken to measure recovery of the parser, correct programs can be executed:
+ * they declare identifiers before reading them and never divide by zero.
+ */
+final class ProgramGenerator {
+
+    /**
+     * declared identifiers
+     */
+    private static final String[] NAMES = {"a", "b", "c"};
+
+    /**
+     * statements with syntax errors, the parser goes on after each of them
+     */
+    private static final String[] BROKEN = {"@a = ;", "a + ;", "(b * 3;", "# c;"};
+
+    private static final String OPERATORS = "+-*<>";
+
+    private final Random random;
+
+    /**
+     * nesting depth of top-level statements, 1 for flat statements
+     */
+    private final int depth;
+
+    /**
+     * percent of broken statements
+     */
+    private final int errorPercent;
+
+    /**
+     * construct a generator
+     *
+     * @param seed         seed of random
+     * @param depth        nesting depth of top-level statements, 1 for flat statements
+     * @param errorPercent percent of broken statements
+     */
+    ProgramGenerator(long seed, int depth, int errorPercent) {
+        if (depth < 1)
+            throw new IllegalArgumentException("Depth should be positive");
+        this.random = new Random(seed);
+        this.depth = depth;
+        this.errorPercent = errorPercent;
+    }
+
+    /**
+     * generate a program
+     *
+     * @param statements number of top-level statements
+     * @return text of program
+     */
+    String generate(int statements) {
+        StringBuilder text = new StringBuilder();
+        for (String name : NAMES)
+            text.append('@').append(name).append(" = ").append(1 + random.nextInt(9)).append("; ");
+        text.append('\n');
+        for (int i = 0; i < statements; ++i) {
+            statement(text, depth);
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private void statement(StringBuilder text, int depth) {
+        if (random.nextInt(100) < errorPercent) {
+            text.append(BROKEN[random.nextInt(BROKEN.length)]);
+            return;
+        }
+        if (depth == 1) {
+            simpleStatement(text);
+            return;
+        }
+        if (random.nextBoolean()) {
+            text.append("if (");
+            expression(text, 2);
+            text.append(") { ");
+        } else {
+            text.append("{ ");
+            simpleStatement(text);
+            text.append(' ');
+        }
+        statement(text, depth - 1);
+        text.append(" }");
+    }
+
+    private void simpleStatement(StringBuilder text) {
+        if (random.nextInt(3) == 0)
+            text.append('@').append(name()).append(" = ");
+        expression(text, 2);
+        text.append(';');
+    }
+
+    private void expression(StringBuilder text, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            if (random.nextBoolean())
+                text.append(name());
+            else
+                text.append(random.nextInt(10));
+            return;
+        }
+        boolean parenthesis = random.nextInt(4) == 0;
+        if (parenthesis)
+            text.append('(');
+        expression(text, depth - 1);
+        if (random.nextInt(6) == 0) {
+            // divisor is a positive constant
+            text.append(" / ").append(1 + random.nextInt(9));
+        } else {
+            text.append(' ').append(OPERATORS.charAt(random.nextInt(OPERATORS.length()))).append(' ');
+            expression(text, depth - 1);
+        }
+        if (parenthesis)
+            text.append(')');
+    }
+
+    private String name() {
+        return NAMES[random.nextInt(NAMES.length)];
+    }
+}
@@ -1,26 +1,37 @@
 package sdfomin.editor;
 
-import sdfomin.parser.JetBrainsAstNode;
-import sdfomin.parser.JetBrainsInterpreter;
-import sdfomin.parser.JetBrainsParser;
-import sdfomin.parser.JetBrainsParserLibrary;
+import sdfomin.parser.JetBrainsMetrics;
+import sdfomin.parser.JetBrainsParseCache;
 
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * To run a program, press the button "Run" in the menu bar.
+ * To run a program, press the button "Run" in the menu bar, "Stop" cancels the run.
  * Base from: <a href="https://www.geeksforgeeks.org/java-swing-create-a-simple-text-editor/"a>here</a>
  * Seems like it wasn't very good example, but I focused on parser and interpreter.
  */
 class Editor extends JFrame implements ActionListener {
+    // Milliseconds without edits before the text is checked
+    static final long ANALYSIS_DELAY = 150;
+
+    // Number of output values appended to the log at once
+    static final int OUTPUT_BATCH = 1024;
+
+    // Limits of the parse cache: number of texts and their estimated memory in bytes
+    static final int PARSE_CACHE_ENTRIES = 64;
+    static final long PARSE_CACHE_BYTES = 64L << 20;
+
     // Text component
     JTextArea textArea;
 
@@ -30,6 +41,22 @@ class Editor extends JFrame implements ActionListener {
     // Log panel
     JTextArea textAreaLog;
 
+    // Trees of texts which were parsed before, shared by the analyzer and runs
+    final JetBrainsParseCache parseCache = new JetBrainsParseCache(PARSE_CACHE_ENTRIES, PARSE_CACHE_BYTES);
+
+    // Analyzer of the text
+    EditorAnalyzer analyzer;
+
+    // Thread of program runs, a new run waits only until the cancelled one stops
+    final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Program run");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The last started run
+    EditorRun run;
+
     // Constructor
     Editor() {
 
@@ -89,10 +116,13 @@ class Editor extends JFrame implements ActionListener {
 
         JMenuItem menuRun = new JMenuItem("Run");
         menuRun.addActionListener(this);
+        JMenuItem menuStop = new JMenuItem("Stop");
+        menuStop.addActionListener(this);
 
         menuBar.add(menuFile);
         menuBar.add(menuEdit);
         menuBar.add(menuRun);
+        menuBar.add(menuStop);
 
         JPanel panel = new JPanel();
         frame.add(panel);
@@ -105,42 +135,21 @@ class Editor extends JFrame implements ActionListener {
         frame.setVisible(true);
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
-        textArea.getDocument().addDocumentListener(new DocumentListener() {
-            @Override
-            public void insertUpdate(DocumentEvent e) {
-                check(e);
-            }
-
-            @Override
-            public void removeUpdate(DocumentEvent e) {
-                check(e);
-            }
-
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-            }
-
-            JetBrainsAstNode prev = (new JetBrainsParser("")).parse();
+        // Check changes in the background, so typing doesn't wait for the parser
+        analyzer = createAnalyzer(textArea.getDocument());
+        textArea.getDocument().addDocumentListener(analyzer);
+    }
 
-            public void check(DocumentEvent e) {
-                try {
-                    String program = e.getDocument().getText(0, e.getDocument().getLength());
-                    JetBrainsParser updated = new JetBrainsParser(program);
-                    JetBrainsAstNode nodeUpdated = updated.parse(); // try to parse for checking block statement update
-                    if (JetBrainsParserLibrary.isTreeUpdated(prev, nodeUpdated)) {
-                        if (JetBrainsParserLibrary.isBlockStatementUpdated(prev, nodeUpdated)) {
-                            textAreaLog.append("Created wrapped if\n");
-                        }
-                        prev = nodeUpdated;
-                    }
+    // Analyzer of a document which reports to the log
+    EditorAnalyzer createAnalyzer(Document document) {
+        return new EditorAnalyzer(document, ANALYSIS_DELAY, parseCache,
+                () -> textAreaLog.append("Created wrapped if\n"));
+    }
 
-                } catch (BadLocationException ex) {
-                    ex.printStackTrace();
-                } catch (Exception ex) {
-                    System.out.println(ex.getMessage());
-                }
-            }
-        });
+    // Show an error of a background task
+    void showError(Exception ex) {
+        Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+        JOptionPane.showMessageDialog(frame, cause.getMessage());
     }
 
     // If a button is pressed
@@ -165,25 +174,26 @@ class Editor extends JFrame implements ActionListener {
                 int r = j.showSaveDialog(null);
 
                 if (r == JFileChooser.APPROVE_OPTION) {
+                    Path path = j.getSelectedFile().toPath();
+                    String text = textArea.getText();
+
+                    // Write in the background, the file is replaced only when the whole text is written
+                    new SwingWorker<Void, Void>() {
+                        @Override
+                        protected Void doInBackground() throws IOException {
+                            EditorFiles.write(path, text);
+                            return null;
+                        }
 
-                    // Set the label to the path of the selected directory
-                    File fi = new File(j.getSelectedFile().getAbsolutePath());
-
-                    try {
-                        // Create a file writer
-                        FileWriter wr = new FileWriter(fi, false);
-
-                        // Create buffered writer to write
-                        BufferedWriter w = new BufferedWriter(wr);
-
-                        // Write
-                        w.write(textArea.getText());
-
-                        w.flush();
-                        w.close();
-                    } catch (Exception evt) {
-                        JOptionPane.showMessageDialog(frame, evt.getMessage());
-                    }
+                        @Override
+                        protected void done() {
+                            try {
+                                get();
+                            } catch (Exception evt) {
+                                showError(evt);
+                            }
+                        }
+                    }.execute();
                 }
                 // If the user cancelled the operation
                 else
@@ -207,33 +217,31 @@ class Editor extends JFrame implements ActionListener {
 
                 // If the user selects a file
                 if (r == JFileChooser.APPROVE_OPTION) {
-                    // Set the label to the path of the selected directory
-                    File fi = new File(j.getSelectedFile().getAbsolutePath());
-
-                    try {
-                        // String
-                        String s1;
-                        StringBuilder sl;
-
-                        // File reader
-                        FileReader fr = new FileReader(fi);
-
-                        // Buffered reader
-                        BufferedReader br = new BufferedReader(fr);
-
-                        // Initialize sl
-                        sl = new StringBuilder(br.readLine());
-
-                        // Take the input from the file
-                        while ((s1 = br.readLine()) != null) {
-                            sl.append("\n").append(s1);
+                    Path path = j.getSelectedFile().toPath();
+
+                    // Read and parse the file in the background, then show the ready document
+                    new SwingWorker<EditorAnalyzer, Void>() {
+                        @Override
+                        protected EditorAnalyzer doInBackground() throws IOException, BadLocationException {
+                            PlainDocument document = new PlainDocument();
+                            document.insertString(0, EditorFiles.read(path).toString(), null);
+                            return createAnalyzer(document);
                         }
 
-                        // Set the text
-                        textArea.setText(sl.toString());
-                    } catch (Exception evt) {
-                        JOptionPane.showMessageDialog(frame, evt.getMessage());
-                    }
+                        @Override
+                        protected void done() {
+                            try {
+                                EditorAnalyzer opened = get();
+                                textArea.getDocument().removeDocumentListener(analyzer);
+                                analyzer.close();
+                                analyzer = opened;
+                                textArea.setDocument(opened.getDocument());
+                                opened.getDocument().addDocumentListener(opened);
+                            } catch (Exception evt) {
+                                showError(evt);
+                            }
+                        }
+                    }.execute();
                 }
                 // If the user cancelled the operation
                 else
@@ -244,20 +252,24 @@ class Editor extends JFrame implements ActionListener {
                 textArea.setText("");
                 break;
             case "Run":
-                JetBrainsParser parser = new JetBrainsParser(textArea.getText());
-                try {
-                    ArrayList<Integer> output = (new JetBrainsInterpreter(parser.parse())).execute();
-                    for (int i = 0; i < output.size(); ++i)
-                        textAreaLog.append(output.get(i) + (i < output.size() - 1 ? ", " : "\n"));
-                } catch (Exception ex) {
-                    textAreaLog.append(ex.getMessage() + "\n");
-                }
+                // a new run replaces the running one instead of waiting for it
+                if (run != null)
+                    run.cancel();
+                // output goes to the log in batches while the program runs, so long outputs aren't kept in memory
+                run = new EditorRun(textArea.getText(), parseCache,
+                        text -> SwingUtilities.invokeLater(() -> textAreaLog.append(text)), OUTPUT_BATCH);
+                runner.execute(run);
+                break;
+            case "Stop":
+                if (run != null)
+                    run.cancel();
                 break;
         }
     }
 
     // Main class
     public static void main(String[] args) {
+        JetBrainsMetrics.install();
         new Editor();
     }
 }
@@ -0,0 +1,249 @@
+package sdfomin.editor;
+
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsMetrics;
+import sdfomin.parser.JetBrainsParseCache;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks document changes off the event dispatch thread.
+ * Edits are collected until the document is quiet for a given period,
+ * then the latest text is parsed by a worker thread and results of outdated texts are dropped.
+ */
+class EditorAnalyzer implements DocumentListener {
+
+    /**
+     * analyzed document
+     */
+    private final Document document;
+
+    /**
+     * quiet period in milliseconds
+     */
+    private final long delay;
+
+    /**
+     * called on the event dispatch thread when user created wrapped if
+     */
+    private final Runnable onWrappedIf;
+
+    /**
+     * thread for parsing
+     */
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Editor analyzer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * scheduled analysis, it's moved forward by every edit
+     */
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * number of edits since creation, used to find out that a result is outdated
+     */
+    private long generation = 0;
+
+    /**
+     * start of the text changed since the last analysis, -1 if nothing was changed
+     */
+    private int editStart = -1;
+
+    /**
+     * end of the changed text before the changes
+     */
+    private int editEnd;
+
+    /**
+     * change of the text length since the last analysis
+     */
+    private int editDelta;
+
+    /**
+     * parser and checks of the worker thread
+     */
+    private final EditorCheck check;
+
+    /**
+     * true if the last analysis failed, the parser may be left at an older text, used by the worker thread
+     */
+    private boolean failed = false;
+
+    /**
+     * construct an analyzer, the current text of the document is parsed by the calling thread
+     *
+     * @param document    document to analyze, it should be changed only after the analyzer listens to it
+     * @param delay       quiet period in milliseconds before the document is parsed
+     * @param cache       trees of texts which were parsed before
+     * @param onWrappedIf called on the event dispatch thread when user created wrapped if
+     */
+    EditorAnalyzer(Document document, long delay, JetBrainsParseCache cache, Runnable onWrappedIf) {
+        this(document, delay, new EditorCheck(getText(document), cache), onWrappedIf);
+    }
+
+    /**
+     * construct an analyzer with a check of the current text of the document
+     *
+     * @param document    document to analyze, it should be changed only after the analyzer listens to it
+     * @param delay       quiet period in milliseconds before the document is parsed
+     * @param check       check of the current text, it's called only by the worker thread
+     * @param onWrappedIf called on the event dispatch thread when user created wrapped if
+     */
+    EditorAnalyzer(Document document, long delay, EditorCheck check, Runnable onWrappedIf) {
+        this.document = document;
+        this.delay = delay;
+        this.onWrappedIf = onWrappedIf;
+        this.check = check;
+    }
+
+    private static String getText(Document document) {
+        try {
+            return document.getText(0, document.getLength());
+        } catch (BadLocationException ex) {
+            ex.printStackTrace();
+            return "";
+        }
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    /**
+     * wait until analyses scheduled by edits made before the call are over, used by tests
+     *
+     * @throws InterruptedException if the thread is interrupted
+     * @throws ExecutionException   if an analysis threw
+     */
+    void awaitIdle() throws InterruptedException, ExecutionException {
+        while (true) {
+            ScheduledFuture<?> last;
+            synchronized (this) {
+                last = scheduled;
+            }
+            if (last == null)
+                return;
+            try {
+                last.get();
+            } catch (CancellationException ex) {
+                // it's replaced by a later analysis
+            }
+            synchronized (this) {
+                // an analysis may edit the document and schedule the next one
+                if (scheduled == last)
+                    return;
+            }
+        }
+    }
+
+    /**
+     * stop the worker thread, analyzer must be removed from the document listeners before
+     */
+    void close() {
+        worker.shutdownNow();
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        edit(e.getOffset(), 0, e.getLength());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        edit(e.getOffset(), e.getLength(), 0);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
+
+    /**
+     * merge an edit with edits since the last analysis and postpone the analysis
+     * called under the document write lock
+     *
+     * @param offset   position of the edit
+     * @param removed  number of removed symbols
+     * @param inserted number of inserted symbols
+     */
+    private synchronized void edit(int offset, int removed, int inserted) {
+        if (editStart < 0) {
+            editStart = offset;
+            editEnd = offset + removed;
+            editDelta = 0;
+        } else {
+            // positions after the changed text are moved by editDelta
+            int end = offset + removed;
+            if (end > editEnd + editDelta)
+                editEnd = end - editDelta;
+            editStart = Math.min(editStart, offset);
+        }
+        editDelta += inserted - removed;
+        ++generation;
+
+        if (scheduled != null)
+            scheduled.cancel(false);
+        scheduled = worker.schedule(this::analyze, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * parse the latest text and check it, runs on the worker thread
+     */
+    private void analyze() {
+        long start = JetBrainsMetrics.start();
+        String[] program = new String[1];
+        int[] edit = new int[3];
+        long[] analyzed = new long[1];
+        // listeners are notified under the write lock, so the text and the edits are consistent
+        document.render(() -> {
+            synchronized (this) {
+                if (editStart < 0)
+                    return;
+                edit[0] = editStart;
+                edit[1] = editEnd - editStart;
+                edit[2] = editEnd - editStart + editDelta;
+                editStart = -1;
+                analyzed[0] = generation;
+            }
+            try {
+                program[0] = document.getText(0, document.getLength());
+            } catch (BadLocationException ex) {
+                ex.printStackTrace();
+            }
+        });
+        if (program[0] == null)
+            return;
+
+        try {
+            // the edit can't be applied to an older text, so the whole text is replaced
+            JetBrainsAstNode nodeUpdated = failed ? check.parse(program[0])
+                    : check.parse(program[0], edit[0], edit[1], edit[2]);
+            failed = false;
+            synchronized (this) {
+                // the text is already outdated, next analysis will check it
+                if (analyzed[0] != generation)
+                    return;
+            }
+            if (check.compare(nodeUpdated))
+                SwingUtilities.invokeLater(onWrappedIf);
+        } catch (RuntimeException | StackOverflowError ex) {
+            // the worker thread keeps running, the next analysis parses the whole text
+            failed = true;
+            System.err.println("Analysis of the text failed: " + ex);
+        } finally {
+            JetBrainsMetrics.analyzed(start);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package sdfomin.editor;
+
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsIncrementalParser;
+import sdfomin.parser.JetBrainsParseCache;
+import sdfomin.parser.JetBrainsParserLibrary;
+
+/**
+ * Analysis of one document state: the text is reparsed after an edit and compared with the last updated tree
+ * It isn't thread-safe, EditorAnalyzer calls it from its worker thread and EditorReplay calls it directly.
+ */
+class EditorCheck {
+
+    /**
+     * parser which keeps the tree of the last text
+     */
+    private final JetBrainsIncrementalParser parser;
+
+    /**
+     * trees of texts which were parsed before, shared with runs of the editor
+     */
+    private final JetBrainsParseCache cache;
+
+    /**
+     * last tree which was counted as updated
+     */
+    private JetBrainsAstNode prev;
+
+    /**
+     * construct a check of a text
+     *
+     * @param text  current text
+     * @param cache trees of texts which were parsed before
+     */
+    EditorCheck(String text, JetBrainsParseCache cache) {
+        this.cache = cache;
+        this.parser = new JetBrainsIncrementalParser(text, cache.parse(text), cache.getSymbols());
+        this.prev = parser.getTree();
+    }
+
+    /**
+     * parse a text after an edit
+     *
+     * @param text      new text
+     * @param start     start of the edited part
+     * @param oldLength length of the edited part before the edit
+     * @param newLength length of the edited part after the edit
+     * @return tree of the new text
+     */
+    JetBrainsAstNode parse(String text, int start, int oldLength, int newLength) {
+        // undo, redo and other returns to a parsed text don't parse it again
+        JetBrainsAstNode cached = cache.get(text);
+        if (cached != null) {
+            parser.reset(text, cached);
+            return cached;
+        }
+        JetBrainsAstNode tree = parser.edit(text, start, oldLength, newLength);
+        // reused errors keep their old positions, runs take trees from the cache and report them
+        if (tree.getErrorCount() == 0)
+            cache.put(text, tree);
+        return tree;
+    }
+
+    /**
+     * parse a text which replaces the whole last parsed text, for example after a failed analysis
+     *
+     * @param text new text
+     * @return tree of the new text
+     */
+    JetBrainsAstNode parse(String text) {
+        return parse(text, 0, parser.getSource().length(), text.length());
+    }
+
+    /**
+     * compare a tree with the last updated one, the tree becomes the last updated if the tree is updated
+     *
+     * @param nodeUpdated tree of the new text
+     * @return true if user created wrapped if
+     */
+    boolean compare(JetBrainsAstNode nodeUpdated) {
+        // edits of whitespaces and undone edits give the same tree
+        if (nodeUpdated.isSameStructure(prev))
+            return false;
+        if (!JetBrainsParserLibrary.isTreeUpdated(prev, nodeUpdated))
+            return false;
+        boolean wrapped = JetBrainsParserLibrary.isBlockStatementUpdated(prev, nodeUpdated);
+        prev = nodeUpdated;
+        return wrapped;
+    }
+
+    /**
+     * parse a text after an edit and compare it with the last updated tree
+     *
+     * @param text      new text
+     * @param start     start of the edited part
+     * @param oldLength length of the edited part before the edit
+     * @param newLength length of the edited part after the edit
+     * @return true if user created wrapped if
+     */
+    boolean check(String text, int start, int oldLength, int newLength) {
+        return compare(parse(text, start, oldLength, newLength));
+    }
+}
@@ -0,0 +1,144 @@
+package sdfomin.editor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reads and writes program files with NIO channels, methods block and should be called off the event dispatch thread
+ * Large files are mapped into memory instead of being copied through a buffer,
+ * saving writes a temporary file and moves it over the target, so a failed save doesn't damage the file.
+ */
+class EditorFiles {
+
+    /**
+     * files of this size in bytes and larger are mapped into memory
+     */
+    static final long MAP_THRESHOLD = 1 << 20;
+
+    /**
+     * encoding of files, the same as FileReader and FileWriter use
+     */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private EditorFiles() {
+    }
+
+    /**
+     * read a text file, line ends are replaced with '\n'
+     * the result can be given to JetBrainsParser without copying to a String
+     *
+     * @param path file
+     * @return text of file
+     * @throws IOException if file can't be read or decoded
+     */
+    static CharSequence read(Path path) throws IOException {
+        CharBuffer text;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File is too large: " + size + " bytes");
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                }
+                bytes.flip();
+            }
+            // broken symbols are replaced as FileReader does
+            text = CHARSET.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+        }
+        return normalizeLineEnds(text);
+    }
+
+    /**
+     * replace "\r\n" and "\r" with "\n"
+     *
+     * @param text text
+     * @return the same text if it has no '\r', otherwise a new one
+     */
+    private static CharSequence normalizeLineEnds(CharBuffer text) {
+        int length = text.length();
+        int first = 0;
+        while (first < length && text.charAt(first) != '\r')
+            ++first;
+        if (first == length)
+            return text;
+
+        StringBuilder result = new StringBuilder(length);
+        result.append(text, 0, first);
+        for (int i = first; i < length; ++i) {
+            char c = text.charAt(i);
+            if (c != '\r')
+                result.append(c);
+            else if (i + 1 == length || text.charAt(i + 1) != '\n')
+                result.append('\n');
+        }
+        return result;
+    }
+
+    /**
+     * write a text file atomically: other readers see either the old text or the new one
+     * a new file gets the default permissions of the directory, characters which can't be encoded are replaced
+     * like FileWriter does
+     *
+     * @param path file
+     * @param text new text of file
+     * @throws IOException if file can't be written, the old file is kept then
+     */
+    static void write(Path path, String text) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = null;
+        FileChannel channel = null;
+        // createTempFile would make the file readable by the owner only
+        while (channel == null) {
+            temporary = target.resolveSibling(target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException ex) {
+                // try another name
+            }
+        }
+        try {
+            try (FileChannel output = channel) {
+                if (Files.exists(target)) {
+                    try {
+                        Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+                    } catch (UnsupportedOperationException ex) {
+                        // not a POSIX file system, the temporary file gets default permissions
+                    }
+                }
+                ByteBuffer bytes = CHARSET.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .encode(CharBuffer.wrap(text));
+                while (bytes.hasRemaining())
+                    output.write(bytes);
+                output.force(true);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
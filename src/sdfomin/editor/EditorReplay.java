@@ -0,0 +1,246 @@
+package sdfomin.editor;
+
+import sdfomin.parser.JetBrainsParseCache;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays editing sessions against the analysis of the editor without a frame and measures latency of every edit
+ * Every document event is analyzed at once by the same EditorCheck the editor uses, without the quiet period,
+ * so the latency is time of getting the text, reparsing it and comparing the trees.
+ * Latencies are grouped by length of the document: lengths below 1024, below 2048, below 4096 and so on.
+ * <p>
+ * Usage: EditorReplay [-n statements] [-budget milliseconds] [recording...]
+ * Without recordings, generated sessions are replayed. With a budget, exit code is 1
+ * if p99 latency of some group is over the budget.
+ */
+class EditorReplay implements DocumentListener {
+
+    /**
+     * the smallest group of document lengths
+     */
+    static final int FIRST_GROUP = 1024;
+
+    private static final double[] PERCENTILES = {50, 99, 100};
+
+    /**
+     * latencies of one group
+     */
+    static final class Latencies {
+
+        private long[] values = new long[16];
+        private int size = 0;
+
+        void add(long nanos) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * get a latency by nearest rank
+         *
+         * @param percentile from 0 to 100
+         * @return latency in nanoseconds, 0 if there are no latencies
+         */
+        long percentile(double percentile) {
+            if (size == 0)
+                return 0;
+            Arrays.sort(values, 0, size);
+            int rank = (int) Math.ceil(percentile / 100 * size);
+            return values[Math.max(rank, 1) - 1];
+        }
+    }
+
+    private final Document document;
+
+    private final EditorCheck check;
+
+    /**
+     * latencies by the first length of group
+     */
+    private final Map<Integer, Latencies> groups = new TreeMap<>();
+
+    /**
+     * number of found wrapped ifs
+     */
+    private int wrappedIfs = 0;
+
+    /**
+     * construct a replay of a session, the initial text isn't measured
+     *
+     * @param session session to replay
+     */
+    EditorReplay(EditorSession session) {
+        document = new PlainDocument();
+        try {
+            document.insertString(0, session.getText(), null);
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        check = new EditorCheck(session.getText(),
+                new JetBrainsParseCache(Editor.PARSE_CACHE_ENTRIES, Editor.PARSE_CACHE_BYTES));
+        document.addDocumentListener(this);
+    }
+
+    /**
+     * apply edits of a session
+     *
+     * @param session session to replay
+     * @throws BadLocationException if an edit is out of the document
+     */
+    void replay(EditorSession session) throws BadLocationException {
+        for (EditorSession.Edit edit : session.getEdits()) {
+            if (edit.removed > 0)
+                document.remove(edit.offset, edit.removed);
+            if (!edit.inserted.isEmpty())
+                document.insertString(edit.offset, edit.inserted, null);
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        analyze(e.getOffset(), 0, e.getLength());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        analyze(e.getOffset(), e.getLength(), 0);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
+
+    /**
+     * analyze the document after an edit and measure the time
+     *
+     * @param offset   position of the edit
+     * @param removed  number of removed symbols
+     * @param inserted number of inserted symbols
+     */
+    private void analyze(int offset, int removed, int inserted) {
+        long start = System.nanoTime();
+        String text;
+        try {
+            text = document.getText(0, document.getLength());
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        if (check.check(text, offset, removed, inserted))
+            ++wrappedIfs;
+        long nanos = System.nanoTime() - start;
+        groups.computeIfAbsent(group(text.length()), group -> new Latencies()).add(nanos);
+    }
+
+    /**
+     * @param length length of document
+     * @return the first length of group
+     */
+    static int group(int length) {
+        return length < FIRST_GROUP ? 0 : Integer.highestOneBit(length);
+    }
+
+    Map<Integer, Latencies> getGroups() {
+        return groups;
+    }
+
+    int getWrappedIfs() {
+        return wrappedIfs;
+    }
+
+    String getText() throws BadLocationException {
+        return document.getText(0, document.getLength());
+    }
+
+    /**
+     * print latencies of groups
+     *
+     * @param name name of session
+     * @param out  stream
+     */
+    void print(String name, PrintStream out) {
+        int events = 0;
+        for (Latencies latencies : groups.values())
+            events += latencies.size();
+        out.println("Session " + name + ": " + events + " events, wrapped ifs: " + wrappedIfs);
+        for (var entry : groups.entrySet()) {
+            StringBuilder line = new StringBuilder();
+            int group = entry.getKey();
+            line.append(String.format("  length %7d..%-7d events %6d, latency ms:",
+                    group, group == 0 ? FIRST_GROUP - 1 : group * 2 - 1, entry.getValue().size()));
+            for (double percentile : PERCENTILES) {
+                double millis = entry.getValue().percentile(percentile) / 1e6;
+                line.append(percentile == 100 ? String.format(" max %.3f", millis)
+                        : String.format(" p%.0f %.3f", percentile, millis));
+            }
+            out.println(line);
+        }
+    }
+
+    /**
+     * @param budgetNanos budget of p99 latency in nanoseconds
+     * @return true if p99 latency of every group is within the budget
+     */
+    boolean isWithin(long budgetNanos) {
+        for (Latencies latencies : groups.values())
+            if (latencies.percentile(99) > budgetNanos)
+                return false;
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException, BadLocationException {
+        int statements = 500;
+        double budget = -1;
+        List<EditorSession> sessions = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i].equals("-n") && i + 1 < args.length)
+                    statements = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-budget") && i + 1 < args.length)
+                    budget = Double.parseDouble(args[++i]);
+                else
+                    sessions.add(EditorSession.read(Paths.get(args[i])));
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: EditorReplay [-n statements] [-budget milliseconds] [recording...]");
+            System.exit(2);
+        }
+        if (sessions.isEmpty()) {
+            String program = EditorSession.program(statements);
+            sessions.add(EditorSession.typing(program));
+            sessions.add(EditorSession.pasting(program, 10));
+            sessions.add(EditorSession.deleting(program));
+            sessions.add(EditorSession.wrapping(program));
+        }
+
+        boolean within = true;
+        for (EditorSession session : sessions) {
+            EditorReplay replay = new EditorReplay(session);
+            replay.replay(session);
+            replay.print(session.getName(), System.out);
+            if (budget >= 0 && !replay.isWithin((long) (budget * 1e6))) {
+                System.out.println("  p99 latency is over the budget of " + budget + " ms");
+                within = false;
+            }
+        }
+        System.exit(within ? 0 : 1);
+    }
+}
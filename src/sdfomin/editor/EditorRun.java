@@ -0,0 +1,90 @@
+package sdfomin.editor;
+
+import sdfomin.parser.JetBrainsBatchedWriter;
+import sdfomin.parser.JetBrainsInterpreter;
+import sdfomin.parser.JetBrainsParseCache;
+
+import java.util.function.Consumer;
+
+/**
+ * One run of a program from the editor, it's executed by a background thread and can be cancelled from any thread
+ * Output is passed to the log in batches while the program runs, then the error message if the run failed.
+ */
+class EditorRun implements Runnable {
+
+    /**
+     * text of program
+     */
+    private final String program;
+
+    /**
+     * trees of texts which were parsed before
+     */
+    private final JetBrainsParseCache cache;
+
+    /**
+     * receiver of output and messages, it's called from the thread of the run
+     */
+    private final Consumer<String> log;
+
+    /**
+     * number of output values passed to the log at once
+     */
+    private final int batchSize;
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * interpreter of the program, null before the program is parsed
+     */
+    private volatile JetBrainsInterpreter interpreter;
+
+    /**
+     * construct a run
+     *
+     * @param program   text of program
+     * @param cache     trees of texts which were parsed before
+     * @param log       receiver of output and messages, it's called from the thread of the run
+     * @param batchSize number of output values passed to the log at once
+     */
+    EditorRun(String program, JetBrainsParseCache cache, Consumer<String> log, int batchSize) {
+        this.program = program;
+        this.cache = cache;
+        this.log = log;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run() {
+        if (cancelled)
+            return;
+        JetBrainsInterpreter current = new JetBrainsInterpreter(cache.parse(program));
+        interpreter = current;
+        // cancel() could miss the interpreter which wasn't set yet
+        if (cancelled)
+            current.cancel();
+
+        JetBrainsBatchedWriter writer = new JetBrainsBatchedWriter(log, batchSize);
+        try {
+            current.execute(writer);
+            writer.close();
+        } catch (Exception ex) {
+            writer.close();
+            log.accept(ex.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * stop the run, a run which didn't start yet won't start
+     */
+    void cancel() {
+        cancelled = true;
+        JetBrainsInterpreter current = interpreter;
+        if (current != null)
+            current.cancel();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,238 @@
+package sdfomin.editor;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Editing session to replay: an initial text and a sequence of edits
+ * Sessions are generated (typing, pasting, deleting, wrapping if bodies into braces) or read from a recording.
+ * A recording has one edit per line: "i offset text" inserts a text, "r offset length" removes symbols,
+ * in the text "\n", "\t" and "\\" stand for a line end, a tab and a backslash. Lines starting with '#' are skipped.
+ */
+class EditorSession {
+
+    /**
+     * one edit of a document
+     */
+    static final class Edit {
+
+        final int offset;
+
+        /**
+         * number of removed symbols, 0 for insertion
+         */
+        final int removed;
+
+        /**
+         * inserted text, empty for removal
+         */
+        final String inserted;
+
+        private Edit(int offset, int removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        static Edit insert(int offset, String text) {
+            return new Edit(offset, 0, text);
+        }
+
+        static Edit remove(int offset, int length) {
+            return new Edit(offset, length, "");
+        }
+    }
+
+    private final String name;
+
+    /**
+     * text of document before the first edit
+     */
+    private final String text;
+
+    private final List<Edit> edits;
+
+    EditorSession(String name, String text, List<Edit> edits) {
+        this.name = name;
+        this.text = text;
+        this.edits = Collections.unmodifiableList(edits);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    List<Edit> getEdits() {
+        return edits;
+    }
+
+    /**
+     * generate a program of simple statements, ifs with bodies without braces and blocks
+     *
+     * @param statements number of statements
+     * @return text of program, one statement per line
+     */
+    static String program(int statements) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < statements; ++i) {
+            String name = "x" + i % 10;
+            switch (i % 4) {
+                case 0:
+                    text.append('@').append(name).append(" = ").append(i).append(';');
+                    break;
+                case 1:
+                    text.append("if (").append(name).append(" > ").append(i % 7).append(") ")
+                            .append(name).append(" * 2;");
+                    break;
+                case 2:
+                    text.append(name).append(" + ").append(i).append(';');
+                    break;
+                default:
+                    text.append("{ ").append(name).append(" - 1; }");
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * type a program symbol by symbol into an empty document
+     *
+     * @param program text to type
+     * @return session
+     */
+    static EditorSession typing(String program) {
+        List<Edit> edits = new ArrayList<>(program.length());
+        for (int i = 0; i < program.length(); ++i)
+            edits.add(Edit.insert(i, program.substring(i, i + 1)));
+        return new EditorSession("typing", "", edits);
+    }
+
+    /**
+     * paste a program by pieces of some lines into an empty document, every piece is pasted to the middle
+     *
+     * @param program text to paste
+     * @param lines   number of lines in a piece
+     * @return session
+     */
+    static EditorSession pasting(String program, int lines) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        int count = 0;
+        for (int i = 0; i < program.length(); ++i) {
+            if (program.charAt(i) == '\n' && ++count == lines) {
+                pieces.add(program.substring(start, i + 1));
+                start = i + 1;
+                count = 0;
+            }
+        }
+        if (start < program.length())
+            pieces.add(program.substring(start));
+
+        // pieces are pasted between lines of already pasted ones, the result is the same program
+        List<Edit> edits = new ArrayList<>(pieces.size());
+        int middle = pieces.size() / 2;
+        int offset = 0;
+        for (int i = 0; i < middle; ++i) {
+            edits.add(Edit.insert(offset, pieces.get(i)));
+            offset += pieces.get(i).length();
+        }
+        for (int i = pieces.size() - 1; i >= middle; --i)
+            edits.add(Edit.insert(offset, pieces.get(i)));
+        return new EditorSession("pasting", "", edits);
+    }
+
+    /**
+     * delete a program symbol by symbol from the end, as backspace does
+     *
+     * @param program initial text
+     * @return session
+     */
+    static EditorSession deleting(String program) {
+        List<Edit> edits = new ArrayList<>(program.length());
+        for (int i = program.length() - 1; i >= 0; --i)
+            edits.add(Edit.remove(i, 1));
+        return new EditorSession("deleting", program, edits);
+    }
+
+    /**
+     * wrap bodies of ifs into braces, from the first if to the last one,
+     * the closing brace and the opening one are separate edits
+     *
+     * @param program initial text, every if should be on its own line and its body should end the line
+     * @return session
+     */
+    static EditorSession wrapping(String program) {
+        List<Edit> edits = new ArrayList<>();
+        // inserted braces move the next lines
+        int shift = 0;
+        int lineStart = 0;
+        while (lineStart < program.length()) {
+            int lineEnd = program.indexOf('\n', lineStart);
+            if (lineEnd < 0)
+                lineEnd = program.length();
+            String line = program.substring(lineStart, lineEnd);
+            int body = line.indexOf(") ");
+            if (line.startsWith("if (") && body >= 0 && !line.startsWith("{", body + 2)) {
+                edits.add(Edit.insert(lineEnd + shift, " }"));
+                edits.add(Edit.insert(lineStart + body + 2 + shift, "{ "));
+                shift += 4;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new EditorSession("wrapping", program, edits);
+    }
+
+    /**
+     * read a recorded session, the recording starts from an empty document
+     *
+     * @param path file of recording
+     * @return session named by the file
+     * @throws IOException              if file can't be read
+     * @throws IllegalArgumentException if a line is broken
+     */
+    static EditorSession read(Path path) throws IOException {
+        List<Edit> edits = new ArrayList<>();
+        int number = 0;
+        for (String line : Files.readAllLines(path, Charset.defaultCharset())) {
+            ++number;
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split(" ", 3);
+            try {
+                if (parts[0].equals("i") && parts.length == 3)
+                    edits.add(Edit.insert(Integer.parseInt(parts[1]), unescape(parts[2])));
+                else if (parts[0].equals("r") && parts.length == 3)
+                    edits.add(Edit.remove(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                else
+                    throw new IllegalArgumentException("Unknown edit on line " + number);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Wrong number on line " + number);
+            }
+        }
+        return new EditorSession(path.getFileName().toString(), "", edits);
+    }
+
+    private static String unescape(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                result.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            result.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+        }
+        return result.toString();
+    }
+}
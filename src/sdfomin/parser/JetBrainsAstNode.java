@@ -1,7 +1,10 @@
 package sdfomin.parser;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Nodes of AST-tree
@@ -19,11 +22,56 @@ public class JetBrainsAstNode {
      */
     private final String text;
 
+    /**
+     * error of PARSE_ERROR node built by the parser, its message is the text of node
+     */
+    private final JetBrainsParseError error;
+
+    /**
+     * id of IDENTIFIER in JetBrainsSymbolTable of the parser, -1 if node wasn't built by the parser
+     */
+    private int symbol = -1;
+
     /**
      * children of node
      */
     private final List<JetBrainsAstNode> children = new ArrayList<>();
 
+    /**
+     * number of source symbols covered by node (set for STATEMENT and STATEMENT_LIST nodes)
+     */
+    private int length;
+
+    /**
+     * number of IF_STATEMENT nodes below node
+     */
+    private int ifCount;
+
+    /**
+     * number of IF_STATEMENT nodes with non-empty BLOCK_STATEMENT below node
+     */
+    private int complexIfCount;
+
+    /**
+     * number of statements below node counted by JetBrainsParserLibrary.countIsTreeUpdated
+     */
+    private int statementCount;
+
+    /**
+     * number of nodes below node
+     */
+    private int nodeCount;
+
+    /**
+     * number of PARSE_ERROR nodes below node
+     */
+    private int errorCount;
+
+    /**
+     * hash of type, text and children, it doesn't depend on length and on messages of PARSE_ERROR nodes
+     */
+    private int hash;
+
     /**
      * construct a node
      *
@@ -32,11 +80,51 @@ public class JetBrainsAstNode {
      * @param children children nodes
      */
     public JetBrainsAstNode(JetBrainsAstNodeType type, String text, JetBrainsAstNode... children) {
+        this(type, text, null, children);
+    }
+
+    /**
+     * construct a PARSE_ERROR node, its text is built from the error when it's read
+     *
+     * @param error    error
+     * @param children children nodes
+     */
+    public JetBrainsAstNode(JetBrainsParseError error, JetBrainsAstNode... children) {
+        this(JetBrainsAstNodeType.PARSE_ERROR, null, error, children);
+    }
+
+    /**
+     * construct a copy of node with other children, the error isn't turned into text
+     *
+     * @param node     node to copy
+     * @param children children nodes
+     */
+    JetBrainsAstNode(JetBrainsAstNode node, JetBrainsAstNode... children) {
+        this(node.type, node.text, node.error, children);
+        this.symbol = node.symbol;
+    }
+
+    /**
+     * construct an IDENTIFIER node of a symbol
+     *
+     * @param name   shared name from the symbol table
+     * @param symbol id of name
+     */
+    JetBrainsAstNode(String name, int symbol) {
+        this(JetBrainsAstNodeType.IDENTIFIER, name);
+        this.symbol = symbol;
+    }
+
+    private JetBrainsAstNode(JetBrainsAstNodeType type, String text, JetBrainsParseError error,
+                             JetBrainsAstNode... children) {
         this.type = type;
         this.text = text;
+        this.error = error;
+        // messages are built lazily, so they aren't hashed
+        this.hash = 31 * type.ordinal() + (type == JetBrainsAstNodeType.PARSE_ERROR ? 0 : Objects.hashCode(text));
         for (var i : children)
             if (i != null)
-                this.children.add(i);
+                addChild(i);
     }
 
     public JetBrainsAstNode(JetBrainsAstNodeType type, JetBrainsAstNode... children) {
@@ -48,12 +136,88 @@ public class JetBrainsAstNode {
     }
 
     /**
-     * add child to a node
+     * add child to a node and its counters to counters of node
+     * child should be complete, later changes of child aren't counted
      *
      * @param child child node
      */
     public void addChild(JetBrainsAstNode child) {
         children.add(child);
+        ifCount += child.ifCount + (child.type == JetBrainsAstNodeType.IF_STATEMENT ? 1 : 0);
+        complexIfCount += child.complexIfCount + (child.isComplexIf() ? 1 : 0);
+        statementCount += countedStatements(child);
+        nodeCount += child.nodeCount + 1;
+        errorCount += child.errorCount + (child.type == JetBrainsAstNodeType.PARSE_ERROR ? 1 : 0);
+        hash = 31 * hash + child.hash;
+    }
+
+    /**
+     * construct a copy of node with one child replaced, the counters are changed by the difference of the children
+     * without visiting other children, so a long StatementList is copied at once
+     *
+     * @param index index of replaced child
+     * @param child new child node
+     * @return copy of node with the same length
+     */
+    JetBrainsAstNode withChild(int index, JetBrainsAstNode child) {
+        JetBrainsAstNode old = children.get(index);
+        JetBrainsAstNode copy = new JetBrainsAstNode(type, text, error);
+        copy.symbol = symbol;
+        copy.length = length;
+        copy.children.addAll(children);
+        copy.children.set(index, child);
+        copy.ifCount = ifCount - old.ifCount + child.ifCount
+                - (old.type == JetBrainsAstNodeType.IF_STATEMENT ? 1 : 0)
+                + (child.type == JetBrainsAstNodeType.IF_STATEMENT ? 1 : 0);
+        copy.complexIfCount = complexIfCount - old.complexIfCount + child.complexIfCount
+                - (old.isComplexIf() ? 1 : 0) + (child.isComplexIf() ? 1 : 0);
+        copy.statementCount = statementCount - countedStatements(old) + countedStatements(child);
+        copy.nodeCount = nodeCount - old.nodeCount + child.nodeCount;
+        copy.errorCount = errorCount - old.errorCount + child.errorCount
+                - (old.type == JetBrainsAstNodeType.PARSE_ERROR ? 1 : 0)
+                + (child.type == JetBrainsAstNodeType.PARSE_ERROR ? 1 : 0);
+        // the hash is a polynomial of children, the child at index has the power of the children after it
+        int power = 1;
+        int base = 31;
+        for (int exponent = children.size() - 1 - index; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0)
+                power *= base;
+            base *= base;
+        }
+        copy.hash = hash + (child.hash - old.hash) * power;
+        return copy;
+    }
+
+    /**
+     * @return true if node is IF_STATEMENT with non-empty BLOCK_STATEMENT
+     */
+    private boolean isComplexIf() {
+        if (type != JetBrainsAstNodeType.IF_STATEMENT)
+            return false;
+        JetBrainsAstNode statement = getChild(1).getChild(0);
+        return statement.type == JetBrainsAstNodeType.BLOCK_STATEMENT && statement.getChild(0).childCount() > 0;
+    }
+
+    /**
+     * number of statements in child and below it, skips IF_STATEMENT without BLOCK_STATEMENT
+     *
+     * @param x child node
+     * @return number of statements
+     */
+    private static int countedStatements(JetBrainsAstNode x) {
+        if (x.type != JetBrainsAstNodeType.STATEMENT || x.childCount() == 0 ||
+                x.getChild(0).type == JetBrainsAstNodeType.PARSE_ERROR)
+            return x.statementCount;
+
+        JetBrainsAstNode statementNode = x.getChild(0);
+        if (statementNode.type != JetBrainsAstNodeType.IF_STATEMENT)
+            return statementNode.statementCount + 1;
+
+        JetBrainsAstNode ifStatementNode = statementNode.getChild(1).getChild(0);
+        if (ifStatementNode.type == JetBrainsAstNodeType.IF_STATEMENT ||
+                ifStatementNode.type == JetBrainsAstNodeType.PARSE_ERROR)
+            return ifStatementNode.statementCount;
+        return ifStatementNode.statementCount + 1;
     }
 
     /**
@@ -77,17 +241,145 @@ public class JetBrainsAstNode {
         return type;
     }
 
+    /**
+     * @return additional information, the message is built here for errors of the parser
+     */
     public String getText() {
-        return text;
+        return error != null ? error.getMessage() : text;
+    }
+
+    /**
+     * @return id of IDENTIFIER in the symbol table of the parser OR -1
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return error of PARSE_ERROR node built by the parser OR null
+     */
+    public JetBrainsParseError getError() {
+        return error;
+    }
+
+    /**
+     * check if node and other node have the same text, messages aren't built if both nodes have errors
+     *
+     * @param other other node
+     * @return true if texts are equal
+     */
+    boolean isSameText(JetBrainsAstNode other) {
+        if (error != null && other.error != null)
+            return error.equals(other.error);
+        return Objects.equals(getText(), other.getText());
     }
 
     @Override
     public String toString() {
+        String text = getText();
         return text != null ? text : type.toString();
     }
 
+    /**
+     * @return read-only list of children, use addChild to change it
+     */
     public List<JetBrainsAstNode> getChildren() {
-        return children;
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return number of source symbols covered by node, including trailing whitespaces
+     */
+    public int getLength() {
+        return length;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return hash of type, text and children computed when the node was built
+     */
+    public int structuralHash() {
+        return hash;
     }
-}
 
+    /**
+     * check if node and other node have the same types, texts and children
+     * nodes with different hashes are compared in O(1), shared subtrees aren't visited,
+     * pairs of children are kept on an explicit stack, so nesting doesn't grow the Java call stack
+     *
+     * @param other other node
+     * @return true if subtrees are identical
+     */
+    public boolean isSameStructure(JetBrainsAstNode other) {
+        if (this == other)
+            return true;
+        if (!isSameNode(other))
+            return false;
+        ArrayDeque<JetBrainsAstNode> nodes = new ArrayDeque<>();
+        ArrayDeque<JetBrainsAstNode> others = new ArrayDeque<>();
+        JetBrainsAstNode node = this;
+        while (true) {
+            for (int i = node.children.size() - 1; i >= 0; --i) {
+                JetBrainsAstNode child = node.children.get(i);
+                JetBrainsAstNode otherChild = other.children.get(i);
+                if (child == otherChild)
+                    continue;
+                if (!child.isSameNode(otherChild))
+                    return false;
+                nodes.push(child);
+                others.push(otherChild);
+            }
+            if (nodes.isEmpty())
+                return true;
+            node = nodes.pop();
+            other = others.pop();
+        }
+    }
+
+    /**
+     * @param other other node
+     * @return true if nodes have the same hashes, types, texts and numbers of children
+     */
+    private boolean isSameNode(JetBrainsAstNode other) {
+        return other != null && hash == other.hash && type == other.type &&
+                children.size() == other.children.size() && isSameText(other);
+    }
+
+    /**
+     * @return number of IF_STATEMENT nodes below node
+     */
+    public int getIfCount() {
+        return ifCount;
+    }
+
+    /**
+     * @return number of IF_STATEMENT nodes with non-empty BLOCK_STATEMENT below node
+     */
+    public int getComplexIfCount() {
+        return complexIfCount;
+    }
+
+    /**
+     * @return number of statements below node counted by JetBrainsParserLibrary.countIsTreeUpdated
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * @return number of nodes below node
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return number of PARSE_ERROR nodes below node
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+}
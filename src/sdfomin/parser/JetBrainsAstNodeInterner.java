@@ -0,0 +1,97 @@
+package sdfomin.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares identical subtrees between trees (hash-consing)
+ * Subtrees with the same types, texts, lengths and children are replaced with one instance,
+ * so interned subtrees are compared by reference. Interned nodes must not be changed.
+ */
+public class JetBrainsAstNodeInterner {
+
+    /**
+     * key of interned node, children of interned nodes are interned, so they are compared by reference
+     */
+    private static final class Key {
+
+        private final JetBrainsAstNode node;
+
+        private Key(JetBrainsAstNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * node.structuralHash() + node.getLength();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            JetBrainsAstNode other = ((Key) o).node;
+            if (node.getType() != other.getType() || node.getLength() != other.getLength() ||
+                    node.childCount() != other.childCount() || !node.isSameText(other))
+                return false;
+            for (int i = 0; i < node.childCount(); ++i)
+                if (node.getChild(i) != other.getChild(i))
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * shared instances of subtrees
+     */
+    private final Map<Key, JetBrainsAstNode> nodes = new HashMap<>();
+
+    /**
+     * find shared instance of a subtree, subtree is added if it's new
+     * children are interned before their parent with an explicit stack, so nesting doesn't grow the Java call stack
+     *
+     * @param root root of subtree
+     * @return shared instance identical to root
+     */
+    public JetBrainsAstNode intern(JetBrainsAstNode root) {
+        ArrayList<JetBrainsAstNode> stack = new ArrayList<>();
+        // number of interned children of every unfinished node
+        JetBrainsIntBuffer steps = new JetBrainsIntBuffer();
+        ArrayList<JetBrainsAstNode> interned = new ArrayList<>();
+        stack.add(root);
+        steps.accept(0);
+        while (!stack.isEmpty()) {
+            JetBrainsAstNode node = stack.get(stack.size() - 1);
+            int step = steps.pop();
+            if (step < node.childCount()) {
+                steps.accept(step + 1);
+                stack.add(node.getChild(step));
+                steps.accept(0);
+                continue;
+            }
+            stack.remove(stack.size() - 1);
+
+            List<JetBrainsAstNode> children = interned.subList(interned.size() - step, interned.size());
+            boolean changed = false;
+            for (int i = 0; i < step; ++i)
+                changed |= children.get(i) != node.getChild(i);
+            JetBrainsAstNode candidate = node;
+            if (changed) {
+                candidate = new JetBrainsAstNode(node, children.toArray(new JetBrainsAstNode[0]));
+                candidate.setLength(node.getLength());
+            }
+            children.clear();
+            interned.add(nodes.computeIfAbsent(new Key(candidate), key -> key.node));
+        }
+        return interned.get(0);
+    }
+
+    /**
+     * @return number of shared instances
+     */
+    public int size() {
+        return nodes.size();
+    }
+}
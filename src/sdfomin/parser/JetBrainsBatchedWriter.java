@@ -0,0 +1,92 @@
+package sdfomin.parser;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes output of a program as text "1, 2, 3" in batches
+ * Only one batch is kept in memory, every full batch is passed to the target at once.
+ * Closing writes the rest and a line end if something was written.
+ */
+public class JetBrainsBatchedWriter implements IntConsumer, Flushable, Closeable {
+
+    /**
+     * separator of values
+     */
+    public static final String SEPARATOR = ", ";
+
+    /**
+     * receiver of text
+     */
+    private final Consumer<String> target;
+
+    /**
+     * number of values in a batch
+     */
+    private final int batchSize;
+
+    /**
+     * text of current batch
+     */
+    private final StringBuilder batch = new StringBuilder();
+
+    /**
+     * number of values in current batch
+     */
+    private int count = 0;
+
+    /**
+     * true if some value was written
+     */
+    private boolean written = false;
+
+    /**
+     * construct a writer
+     *
+     * @param target    receiver of text
+     * @param batchSize number of values in a batch
+     */
+    public JetBrainsBatchedWriter(Consumer<String> target, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size should be positive");
+        this.target = target;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void accept(int value) {
+        if (written)
+            batch.append(SEPARATOR);
+        batch.append(value);
+        written = true;
+        if (++count == batchSize)
+            flush();
+    }
+
+    /**
+     * pass current batch to the target
+     */
+    @Override
+    public void flush() {
+        if (count == 0)
+            return;
+        target.accept(batch.toString());
+        batch.setLength(0);
+        count = 0;
+    }
+
+    /**
+     * pass the rest and a line end to the target
+     */
+    @Override
+    public void close() {
+        if (written) {
+            batch.append('\n');
+            ++count;
+        }
+        flush();
+        written = false;
+    }
+}
@@ -0,0 +1,118 @@
+package sdfomin.parser;
+
+/**
+ * Program compiled by JetBrainsCompiler
+ * Instructions are stored in one int array: operation code followed by its operand if it has one
+ */
+public class JetBrainsBytecode {
+
+    /**
+     * push operand to the stack
+     */
+    public static final int PUSH = 0;
+
+    /**
+     * push integer parsed from the text with index operand, fails like the interpreter does for bad integers
+     */
+    public static final int PARSE_INT = 1;
+
+    /**
+     * push variable from slot operand, fails if variable wasn't assigned
+     */
+    public static final int LOAD = 2;
+
+    /**
+     * pop value to the slot operand
+     */
+    public static final int STORE = 3;
+
+    /**
+     * pop two values and push the result of operation
+     */
+    public static final int LESS = 4;
+    public static final int GREATER = 5;
+    public static final int ADD = 6;
+    public static final int SUBTRACT = 7;
+    public static final int MULTIPLY = 8;
+    public static final int DIVIDE = 9;
+
+    /**
+     * pop value to the output
+     */
+    public static final int PRINT = 10;
+
+    /**
+     * pop value and jump to the instruction operand if it's zero
+     */
+    public static final int JUMP_IF_ZERO = 11;
+
+    /**
+     * throw InterpretException with the text with index operand
+     */
+    public static final int THROW = 12;
+
+    /**
+     * stop the program
+     */
+    public static final int HALT = 13;
+
+    /**
+     * instructions
+     */
+    private final int[] code;
+
+    /**
+     * texts of integers and error messages
+     */
+    private final String[] texts;
+
+    /**
+     * names of variables by slots
+     */
+    private final String[] names;
+
+    /**
+     * maximal size of the stack
+     */
+    private final int maxStack;
+
+    JetBrainsBytecode(int[] code, String[] texts, String[] names, int maxStack) {
+        this.code = code;
+        this.texts = texts;
+        this.names = names;
+        this.maxStack = maxStack;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    String[] getTexts() {
+        return texts;
+    }
+
+    /**
+     * @return names of variables by slots
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int slotCount() {
+        return names.length;
+    }
+
+    /**
+     * @return number of instructions and operands
+     */
+    public int size() {
+        return code.length;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+}
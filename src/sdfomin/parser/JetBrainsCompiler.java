@@ -0,0 +1,237 @@
+package sdfomin.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static sdfomin.parser.JetBrainsBytecode.*;
+
+/**
+ * Compiles a program linked by JetBrainsResolver to JetBrainsBytecode
+ */
+public class JetBrainsCompiler {
+
+    /**
+     * instructions
+     */
+    private int[] code = new int[64];
+
+    /**
+     * number of used elements of code
+     */
+    private int size = 0;
+
+    /**
+     * texts of integers and error messages
+     */
+    private final List<String> texts = new ArrayList<>();
+
+    /**
+     * size of the stack at the current instruction
+     */
+    private int stack = 0;
+
+    /**
+     * maximal size of the stack
+     */
+    private int maxStack = 0;
+
+    private JetBrainsCompiler() {
+    }
+
+    /**
+     * compile a program
+     *
+     * @param programNode Program node
+     * @return compiled program
+     */
+    public static JetBrainsBytecode compile(JetBrainsAstNode programNode) {
+        return compile(JetBrainsResolver.resolve(programNode));
+    }
+
+    /**
+     * compile a linked program
+     * undeclared identifiers fail when they are read, like in JetBrainsInterpreter for AST-tree
+     *
+     * @param program linked program
+     * @return compiled program
+     */
+    public static JetBrainsBytecode compile(JetBrainsResolvedProgram program) {
+        JetBrainsCompiler compiler = new JetBrainsCompiler();
+        compiler.statement(program.getRoot());
+        compiler.emit(HALT);
+
+        String[] names = new String[program.slotCount()];
+        for (int i = 0; i < names.length; ++i)
+            names[i] = program.getName(i);
+        return new JetBrainsBytecode(Arrays.copyOf(compiler.code, compiler.size),
+                compiler.texts.toArray(new String[0]), names, compiler.maxStack);
+    }
+
+    /**
+     * compile node and its children
+     * children are emitted before their parent from an explicit stack of unfinished nodes,
+     * so nesting of the program doesn't grow the Java call stack
+     *
+     * @param root statement node
+     */
+    private void statement(JetBrainsResolvedNode root) {
+        // unfinished nodes, number of their finished children and whether they leave a value on the stack
+        JetBrainsResolvedNode[] nodes = new JetBrainsResolvedNode[16];
+        int[] steps = new int[16];
+        boolean[] expressions = new boolean[16];
+        int top = 0;
+        nodes[0] = root;
+        // operands of JUMP_IF_ZERO of unfinished IF statements
+        JetBrainsIntBuffer jumps = new JetBrainsIntBuffer();
+
+        while (top >= 0) {
+            JetBrainsResolvedNode node = nodes[top];
+            int step = steps[top];
+            JetBrainsResolvedNode next = null;
+            boolean expression = false;
+            if (expressions[top]) {
+                switch (node.getType()) {
+                    case INTEGER:
+                        if (node.getText() == null)
+                            emit(PUSH, node.getValue());
+                        else // keep the exception for the moment when the interpreter would throw it
+                            emit(PARSE_INT, text(node.getText()));
+                        break;
+                    case IDENTIFIER:
+                        emit(LOAD, node.getValue());
+                        break;
+                    case CONDITION_EXPRESSION:
+                    case PLUS_MINUS_EXPRESSION:
+                    case MULTIPLY_DIVISION_EXPRESSION:
+                        if (step < 2) {
+                            next = node.getChild(step);
+                            expression = true;
+                        } else
+                            emit(operation(node.getValue()));
+                        break;
+                    case PARSE_ERROR:
+                        emit(THROW, text(node.getText()));
+                        // nothing is left on the stack, but following code expects the value
+                        stack++;
+                        break;
+                    case UNKNOWN:
+                        throw new IllegalArgumentException("Undefined type of AST-node!");
+                    default:
+                        throw new IllegalArgumentException("Unknown type of operation");
+                }
+            } else {
+                switch (node.getType()) {
+                    case STATEMENT_LIST:
+                        if (step < node.childCount())
+                            next = node.getChild(step);
+                        break;
+                    case EXPRESSION_STATEMENT:
+                        if (step == 0) {
+                            next = node.getChild(0);
+                            expression = true;
+                        } else
+                            emit(PRINT);
+                        break;
+                    case IF_STATEMENT:
+                        if (step == 0) {
+                            next = node.getChild(0);
+                            expression = true;
+                        } else if (step == 1) {
+                            emit(JUMP_IF_ZERO, 0);
+                            jumps.accept(size - 1);
+                            next = node.getChild(1);
+                        } else
+                            code[jumps.pop()] = size;
+                        break;
+                    case ASSIGN_STATEMENT:
+                        if (step == 0) {
+                            next = node.getChild(0);
+                            expression = true;
+                        } else
+                            emit(STORE, node.getValue());
+                        break;
+                    case PARSE_ERROR:
+                        emit(THROW, text(node.getText()));
+                        break;
+                    case UNKNOWN:
+                        throw new IllegalArgumentException("Undefined type of AST-node!");
+                    default:
+                        throw new IllegalArgumentException("Unknown type of operation");
+                }
+            }
+
+            if (next == null) {
+                --top;
+                continue;
+            }
+            steps[top] = step + 1;
+            if (++top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                steps = Arrays.copyOf(steps, top * 2);
+                expressions = Arrays.copyOf(expressions, top * 2);
+            }
+            nodes[top] = next;
+            steps[top] = 0;
+            expressions[top] = expression;
+        }
+    }
+
+    /**
+     * @param operator operator symbol of resolved node
+     * @return instruction of operator
+     */
+    private static int operation(int operator) {
+        switch (operator) {
+            case '<':
+                return LESS;
+            case '>':
+                return GREATER;
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case '*':
+                return MULTIPLY;
+            default:
+                return DIVIDE;
+        }
+    }
+
+    private int text(String text) {
+        texts.add(text);
+        return texts.size() - 1;
+    }
+
+    /**
+     * add instruction and count the stack size after it
+     */
+    private void emit(int operation, int operand) {
+        emit(operation);
+        code[size++] = operand;
+    }
+
+    private void emit(int operation) {
+        if (size + 2 > code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+        code[size++] = operation;
+        switch (operation) {
+            case PUSH:
+            case PARSE_INT:
+            case LOAD:
+                maxStack = Math.max(maxStack, ++stack);
+                break;
+            case STORE:
+            case PRINT:
+            case JUMP_IF_ZERO:
+            case LESS:
+            case GREATER:
+            case ADD:
+            case SUBTRACT:
+            case MULTIPLY:
+            case DIVIDE:
+                stack--;
+                break;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package sdfomin.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AST-tree stored in one primitive buffer instead of objects
+ * Nodes are numbered in breadth-first order, so children of every node go one after another
+ * and a node is a record of ints: type, index of text, first child, number of children, length.
+ * Equal texts are stored once. The buffer can be placed out of the Java heap for large programs.
+ * It's an export format made from a parsed tree, e.g. to keep a large program or pass it on compactly:
+ * building it copies the tree, so parsing, analysis and execution work with JetBrainsAstNode directly.
+ */
+public class JetBrainsFlatTree {
+
+    /**
+     * offsets of fields in a record of node
+     */
+    private static final int TYPE = 0;
+    private static final int TEXT = 1;
+    private static final int FIRST_CHILD = 2;
+    private static final int CHILD_COUNT = 3;
+    private static final int LENGTH = 4;
+    private static final int RECORD = 5;
+
+    private static final JetBrainsAstNodeType[] TYPES = JetBrainsAstNodeType.values();
+
+    /**
+     * records of nodes
+     */
+    private final IntBuffer nodes;
+
+    /**
+     * texts of nodes by indices
+     */
+    private final String[] texts;
+
+    private JetBrainsFlatTree(IntBuffer nodes, String[] texts) {
+        this.nodes = nodes;
+        this.texts = texts;
+    }
+
+    /**
+     * store a tree in the Java heap
+     *
+     * @param root root node
+     * @return flat tree
+     */
+    public static JetBrainsFlatTree of(JetBrainsAstNode root) {
+        return of(root, false);
+    }
+
+    /**
+     * store a tree
+     *
+     * @param root    root node
+     * @param offHeap true to store nodes in a direct buffer out of the Java heap
+     * @return flat tree
+     */
+    public static JetBrainsFlatTree of(JetBrainsAstNode root, boolean offHeap) {
+        // breadth-first order of nodes
+        JetBrainsAstNode[] order = {root};
+        int size = 1;
+        for (int i = 0; i < size; ++i) {
+            for (var child : order[i].getChildren()) {
+                if (size == order.length)
+                    order = Arrays.copyOf(order, size * 2);
+                order[size++] = child;
+            }
+        }
+
+        IntBuffer nodes = offHeap
+                ? ByteBuffer.allocateDirect(size * RECORD * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(size * RECORD);
+
+        Map<String, Integer> textIndices = new HashMap<>();
+        int next = 1;
+        for (int i = 0; i < size; ++i) {
+            JetBrainsAstNode node = order[i];
+            int record = i * RECORD;
+            nodes.put(record + TYPE, node.getType().ordinal());
+            nodes.put(record + TEXT, node.getText() == null ? -1
+                    : textIndices.computeIfAbsent(node.getText(), text -> textIndices.size()));
+            nodes.put(record + FIRST_CHILD, next);
+            nodes.put(record + CHILD_COUNT, node.childCount());
+            nodes.put(record + LENGTH, node.getLength());
+            next += node.childCount();
+        }
+
+        String[] texts = new String[textIndices.size()];
+        for (var entry : textIndices.entrySet())
+            texts[entry.getValue()] = entry.getKey();
+        return new JetBrainsFlatTree(nodes, texts);
+    }
+
+    /**
+     * @return root node
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    /**
+     * @return number of nodes, nodes are numbered from 0 to size - 1
+     */
+    public int size() {
+        return nodes.capacity() / RECORD;
+    }
+
+    public JetBrainsAstNodeType getType(int node) {
+        return TYPES[nodes.get(node * RECORD + TYPE)];
+    }
+
+    public String getText(int node) {
+        int text = nodes.get(node * RECORD + TEXT);
+        return text < 0 ? null : texts[text];
+    }
+
+    /**
+     * @param node node
+     * @return index of text of node, equal texts have equal indices, -1 if node has no text
+     */
+    public int getTextIndex(int node) {
+        return nodes.get(node * RECORD + TEXT);
+    }
+
+    /**
+     * @param node node
+     * @return number of children
+     */
+    public int childCount(int node) {
+        return nodes.get(node * RECORD + CHILD_COUNT);
+    }
+
+    /**
+     * get child of node
+     *
+     * @param node  node
+     * @param index index of child node
+     * @return child node
+     */
+    public int getChild(int node, int index) {
+        if (index < 0 || index >= childCount(node))
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + childCount(node));
+        return nodes.get(node * RECORD + FIRST_CHILD) + index;
+    }
+
+    /**
+     * @param node node
+     * @return number of source symbols covered by node, set for STATEMENT and STATEMENT_LIST nodes
+     */
+    public int getLength(int node) {
+        return nodes.get(node * RECORD + LENGTH);
+    }
+
+    /**
+     * @return true if nodes are stored out of the Java heap
+     */
+    public boolean isOffHeap() {
+        return nodes.isDirect();
+    }
+}
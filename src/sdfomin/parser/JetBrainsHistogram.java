@@ -0,0 +1,118 @@
+package sdfomin.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values which can be recorded by many threads without locks
+ * Every power of two is split into 8 buckets, so percentiles are found with an error below 12.5%.
+ * Recording is a few atomic increments and doesn't allocate.
+ */
+public class JetBrainsHistogram {
+
+    /**
+     * number of buckets in a power of two
+     */
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+
+    /**
+     * values 0..7 have their own buckets, then 8 buckets for every power of two up to 2^62
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value non-negative value
+     * @return index of bucket of value
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param bucket index of bucket
+     * @return the largest value of bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * record a value, negative values are recorded as 0
+     *
+     * @param value value
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * find a value which isn't less than the given percent of recorded values
+     * the result is the upper bound of bucket, but not more than the maximum
+     *
+     * @param percentile from 0 to 100
+     * @return value, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * forget recorded values, values recorded at the same time can be partly kept
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i)
+            buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
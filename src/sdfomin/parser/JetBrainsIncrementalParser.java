@@ -0,0 +1,447 @@
+package sdfomin.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser which keeps the last AST-tree and after an edit reparses only the statements the edit touches.
+ * Statements of a STATEMENT_LIST cover the source without gaps, so their positions are restored from lengths.
+ * Other subtrees are reused as-is, so PARSE_ERROR messages inside them keep positions from the time they were parsed.
+ */
+public class JetBrainsIncrementalParser {
+
+    /**
+     * number of symbols after the end of a statement which the parser may look at
+     */
+    private static final int LOOKAHEAD = 2;
+
+    /**
+     * positions of statements of a StatementList and its end position
+     * an edit inside of one statement moves all statements after it, the move is kept as one pending shift
+     * and is applied to the array only when an edit touches another statement
+     */
+    private static final class Starts {
+
+        private final int[] values;
+
+        /**
+         * index of the first position the shift is added to
+         */
+        private int shiftFrom;
+        private int shift;
+
+        private Starts(JetBrainsAstNode list, int listStart) {
+            values = new int[list.childCount() + 1];
+            values[0] = listStart;
+            for (int i = 0; i < list.childCount(); ++i)
+                values[i + 1] = values[i] + list.getChild(i).getLength();
+            shiftFrom = values.length;
+        }
+
+        private int get(int index) {
+            return values[index] + (index >= shiftFrom ? shift : 0);
+        }
+
+        /**
+         * @param pos position
+         * @return the first index of position which isn't less than pos, or the number of positions
+         */
+        private int lowerBound(int pos) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle) < pos)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * move positions from an index
+         *
+         * @param from  the first moved index
+         * @param delta change of positions
+         */
+        private void shift(int from, int delta) {
+            if (from != shiftFrom) {
+                for (int i = shiftFrom; i < values.length; ++i)
+                    values[i] += shift;
+                shiftFrom = from;
+                shift = 0;
+            }
+            shift += delta;
+        }
+    }
+
+    /**
+     * StatementList on the way from Program down to the edit
+     */
+    private static final class Level {
+
+        /**
+         * old StatementList node
+         */
+        private final JetBrainsAstNode list;
+
+        /**
+         * position after the opening bracket of the list
+         */
+        private final int open;
+
+        /**
+         * position of the first statement of the list
+         */
+        private final int listStart;
+
+        /**
+         * true if it is the list of Program
+         */
+        private final boolean top;
+
+        private final Starts starts;
+
+        /**
+         * index of the statement containing the edit in a nested list, -1 if the list is parsed again
+         */
+        private int index = -1;
+
+        /**
+         * Statement nodes from the statement at index down to the one with BlockStatement of the nested list,
+         * every other one is the statement of IfStatement of the previous one
+         */
+        private List<JetBrainsAstNode> path;
+
+        private Level(JetBrainsAstNode list, int open, int listStart, boolean top, Starts starts) {
+            this.list = list;
+            this.open = open;
+            this.listStart = listStart;
+            this.top = top;
+            this.starts = starts;
+        }
+    }
+
+    /**
+     * ids of identifiers of all texts the parser parsed
+     */
+    private final JetBrainsSymbolTable symbols;
+
+    /**
+     * text of the last parsed tree
+     */
+    private String source;
+
+    /**
+     * last parsed tree
+     */
+    private JetBrainsAstNode tree;
+
+    /**
+     * StatementList of Program the top starts belong to, null if they aren't computed
+     */
+    private JetBrainsAstNode topList;
+
+    /**
+     * positions of statements of Program, they are kept while edits stay inside of statements
+     */
+    private Starts topStarts;
+
+    /**
+     * text after the current edit
+     */
+    private String updated;
+
+    /**
+     * position of the current edit
+     */
+    private int offset;
+
+    /**
+     * number of removed symbols in the current edit
+     */
+    private int removed;
+
+    /**
+     * change of the text length in the current edit
+     */
+    private int delta;
+
+    /**
+     * construct a parser and parse the whole text
+     *
+     * @param source text to parse
+     */
+    public JetBrainsIncrementalParser(String source) {
+        this.symbols = new JetBrainsSymbolTable();
+        this.source = source;
+        this.tree = new JetBrainsParser(source, symbols).parse();
+    }
+
+    /**
+     * construct a parser of a text which is already parsed
+     *
+     * @param source  text
+     * @param tree    Program node of the text, for example from JetBrainsParseCache
+     * @param symbols symbol table the tree was parsed with
+     */
+    public JetBrainsIncrementalParser(String source, JetBrainsAstNode tree, JetBrainsSymbolTable symbols) {
+        this.symbols = symbols;
+        this.source = source;
+        this.tree = tree;
+    }
+
+    /**
+     * replace the last text and tree, the next edit is applied to them
+     *
+     * @param source text
+     * @param tree   Program node of the text
+     */
+    public void reset(String source, JetBrainsAstNode tree) {
+        this.source = source;
+        this.tree = tree;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public JetBrainsAstNode getTree() {
+        return tree;
+    }
+
+    /**
+     * update tree after the text was inserted
+     *
+     * @param source new text
+     * @param offset position of inserted text
+     * @param length length of inserted text
+     * @return Program node of new text
+     */
+    public JetBrainsAstNode insert(String source, int offset, int length) {
+        return edit(source, offset, 0, length);
+    }
+
+    /**
+     * update tree after the text was removed
+     *
+     * @param source new text
+     * @param offset position of removed text
+     * @param length length of removed text
+     * @return Program node of new text
+     */
+    public JetBrainsAstNode remove(String source, int offset, int length) {
+        return edit(source, offset, length, 0);
+    }
+
+    /**
+     * update tree after the text was replaced
+     *
+     * @param source   new text
+     * @param offset   position of replaced text
+     * @param removed  length of replaced text in old text
+     * @param inserted length of text which replaced it
+     * @return Program node of new text
+     */
+    public JetBrainsAstNode edit(String source, int offset, int removed, int inserted) {
+        if (source.length() != this.source.length() - removed + inserted)
+            throw new IllegalArgumentException("Edit doesn't match the text length");
+        this.updated = source;
+        this.offset = offset;
+        this.removed = removed;
+        this.delta = inserted - removed;
+        long start = JetBrainsMetrics.start();
+
+        JetBrainsAstNode list = tree.getChild(0);
+        int listStart = skipWhitespaces(this.source, 0);
+        JetBrainsAstNode result = null;
+        // the list ends on "}" when Program has extra symbols, it's easier to parse it again
+        if (listStart + list.getLength() == this.source.length()) {
+            JetBrainsAstNode newList = reparseTree(list, listStart);
+            if (newList != null)
+                result = new JetBrainsAstNode(JetBrainsAstNodeType.PROGRAM, newList);
+        }
+        if (result == null)
+            result = new JetBrainsParser(source, symbols).parseProgram();
+        JetBrainsMetrics.parsed(start, result);
+
+        this.source = source;
+        this.updated = null;
+        this.tree = result;
+        return result;
+    }
+
+    /**
+     * reparse the innermost StatementList containing the edit and rebuild the lists around it
+     * nested statements are walked down with a loop and the lists on the way are kept on a stack,
+     * so nesting doesn't grow the Java call stack
+     *
+     * @param list      StatementList node of Program
+     * @param listStart position of the first statement of the list
+     * @return new StatementList node OR null if the edit changed the bounds of the list
+     */
+    private JetBrainsAstNode reparseTree(JetBrainsAstNode list, int listStart) {
+        Starts starts;
+        if (list == topList && topStarts.get(0) == listStart) {
+            starts = topStarts;
+        } else {
+            starts = new Starts(list, listStart);
+            topList = list;
+            topStarts = starts;
+        }
+
+        ArrayDeque<Level> levels = new ArrayDeque<>();
+        Level level = new Level(list, 0, listStart, true, starts);
+        while (level != null) {
+            levels.push(level);
+            level = enter(level);
+        }
+        // a list whose nested list can't be reparsed is parsed again itself
+        JetBrainsAstNode result = null;
+        while (!levels.isEmpty()) {
+            level = levels.pop();
+            result = result != null ? replaceStatement(level, result) : reparseList(level);
+        }
+        return result;
+    }
+
+    /**
+     * find the statement containing the edit in its nested StatementList
+     *
+     * @param level list containing the edit
+     * @return level of the nested list OR null if the edit isn't inside of a nested list
+     */
+    private Level enter(Level level) {
+        Starts starts = level.starts;
+        int count = level.list.childCount();
+        // try to keep the change inside of one statement, the first possible statement ends after the edit
+        for (int i = Math.max(0, starts.lowerBound(offset + removed) - 1); i < count; ++i) {
+            if (starts.get(i) > offset)
+                return null;
+            if (offset + removed <= starts.get(i + 1) && (i == 0 || starts.get(i) + LOOKAHEAD <= offset))
+                return enterStatement(level, i);
+        }
+        return null;
+    }
+
+    /**
+     * walk down IfStatement nodes of a statement to BlockStatement whose StatementList contains the edit
+     *
+     * @param level list of the statement
+     * @param index index of the statement
+     * @return level of the nested list OR null if the edit isn't inside of it
+     */
+    private Level enterStatement(Level level, int index) {
+        List<JetBrainsAstNode> path = new ArrayList<>();
+        JetBrainsAstNode statement = level.list.getChild(index);
+        int start = level.starts.get(index);
+        while (statement.childCount() > 0 && statement.getChild(0).getType() == JetBrainsAstNodeType.IF_STATEMENT) {
+            path.add(statement);
+            JetBrainsAstNode inner = statement.getChild(0).getChild(1);
+            int innerStart = start + statement.getLength() - inner.getLength();
+            if (offset <= innerStart)
+                return null;
+            statement = inner;
+            start = innerStart;
+        }
+        if (statement.childCount() == 0 || statement.getChild(0).getType() != JetBrainsAstNodeType.BLOCK_STATEMENT)
+            return null;
+        path.add(statement);
+
+        JetBrainsAstNode list = statement.getChild(0).getChild(0);
+        int open = start + 1;
+        int listStart = skipWhitespaces(source, open);
+        if (offset < open || offset + removed > listStart + list.getLength())
+            return null;
+        level.index = index;
+        level.path = path;
+        return new Level(list, open, listStart, false, new Starts(list, listStart));
+    }
+
+    /**
+     * replace the statement containing the edit with the statement of the new nested list
+     *
+     * @param level   list of the statement
+     * @param newList new nested StatementList node
+     * @return new StatementList node
+     */
+    private JetBrainsAstNode replaceStatement(Level level, JetBrainsAstNode newList) {
+        JetBrainsAstNode node = newList;
+        for (int i = level.path.size() - 1; i >= 0; --i) {
+            JetBrainsAstNode statement = level.path.get(i);
+            JetBrainsAstNode child = statement.getChild(0);
+            // BlockStatement has the list, IfStatement has the statement as the second child
+            node = statement.withChild(0, child.withChild(i == level.path.size() - 1 ? 0 : 1, node));
+            node.setLength(statement.getLength() + delta);
+        }
+        JetBrainsAstNode result = level.list.withChild(level.index, node);
+        result.setLength(level.list.getLength() + delta);
+        if (level.top) {
+            topList = result;
+            level.starts.shift(level.index + 1, delta);
+        }
+        return result;
+    }
+
+    /**
+     * parse statements of StatementList containing the edit again
+     *
+     * @param level list containing the edit
+     * @return new StatementList node OR null if the edit changed the bounds of the list
+     */
+    private JetBrainsAstNode reparseList(Level level) {
+        JetBrainsAstNode list = level.list;
+        Starts starts = level.starts;
+        int count = list.childCount();
+
+        // first statement which may look at the changed symbols
+        int first = 0;
+        while (first < count && starts.get(first + 1) + LOOKAHEAD <= offset)
+            ++first;
+        int listEnd = starts.get(count) + delta;
+        int newListStart = first == 0 ? skipWhitespaces(updated, level.open) : level.listStart;
+
+        JetBrainsParser parser = new JetBrainsParser(updated, first == 0 ? newListStart : starts.get(first), symbols);
+        JetBrainsAstNode result = new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT_LIST);
+        for (int i = 0; i < first; ++i)
+            result.addChild(list.getChild(i));
+
+        int next = first;
+        while (true) {
+            JetBrainsAstNode statement = parser.nextStatement();
+            int pos = parser.getPos();
+            if (statement == null) {
+                if (pos != listEnd || (level.top && pos != updated.length()))
+                    return null;
+                break;
+            }
+            if (pos > listEnd)
+                return null;
+            result.addChild(statement);
+
+            // old statements after the edit are the same if the parser stopped at one of them
+            while (next < count && (starts.get(next) < offset + removed || starts.get(next) + delta < pos))
+                ++next;
+            if (next < count && starts.get(next) + delta == pos) {
+                for (int i = next; i < count; ++i)
+                    result.addChild(list.getChild(i));
+                break;
+            }
+        }
+        result.setLength(listEnd - newListStart);
+        return result;
+    }
+
+    /**
+     * @param text text
+     * @param pos  start position
+     * @return position of first non-whitespace symbol
+     */
+    private int skipWhitespaces(String text, int pos) {
+        JetBrainsParser parser = new JetBrainsParser(text, pos, symbols);
+        parser.skip();
+        return parser.getPos();
+    }
+}
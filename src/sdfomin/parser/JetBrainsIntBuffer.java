@@ -0,0 +1,90 @@
+package sdfomin.parser;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Growable array of ints, collects output of a program without boxing
+ * It can be used as a stack of ints too
+ */
+public class JetBrainsIntBuffer implements IntConsumer {
+
+    /**
+     * stored values, only first size are used
+     */
+    private int[] values;
+
+    /**
+     * number of stored values
+     */
+    private int size = 0;
+
+    public JetBrainsIntBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity initial capacity
+     */
+    public JetBrainsIntBuffer(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * add value to the end
+     *
+     * @param value value
+     */
+    @Override
+    public void accept(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    /**
+     * @param index index of value
+     * @return value
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        return values[index];
+    }
+
+    /**
+     * @return the last value
+     */
+    public int peek() {
+        return get(size - 1);
+    }
+
+    /**
+     * remove the last value
+     *
+     * @return removed value
+     */
+    public int pop() {
+        int value = peek();
+        --size;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return copy of stored values
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * remove all values, capacity is kept
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -1,26 +1,99 @@
 package sdfomin.parser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class JetBrainsInterpreter {
 
     /**
-     * table of variables in program
+     * slots of variables by names, a name is hashed only the first time its symbol is seen
      */
-    private final Map<String, Integer> varTable = new HashMap<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * slots of variables by ids of symbols
+     */
+    private int[] symbolSlots = new int[0];
+
+    /**
+     * names by ids of symbols, compared by reference since all occurrences of a symbol share the name
+     */
+    private String[] symbolNames = new String[0];
 
     /**
      * main program node
      */
     private final JetBrainsAstNode programNode;
 
+    /**
+     * linked program, it's executed instead of programNode if present
+     */
+    private final JetBrainsResolvedProgram resolvedProgram;
+
+    /**
+     * values of variables by slots
+     */
+    private int[] frame = new int[0];
+
+    /**
+     * slots which were assigned
+     */
+    private boolean[] assigned = new boolean[0];
+
     /**
      * output of a program
      */
     private final ArrayList<Integer> output = new ArrayList<>();
 
+    /**
+     * receives results of EXPRESSION_STATEMENT while the program runs
+     */
+    private IntConsumer sink;
+
+    /**
+     * number of nodes evaluated by the last run
+     */
+    private long evaluated;
+
+    /**
+     * number of values printed by the last run, counted only when metrics are enabled
+     */
+    private long printed;
+
+    /**
+     * number of evaluated nodes between checks of cancellation and limits
+     */
+    static final int CHECK_INTERVAL = 4096;
+
+    /**
+     * set by another thread to stop the run
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * the largest number of nodes a run may evaluate
+     */
+    private long operationLimit = Long.MAX_VALUE;
+
+    /**
+     * the longest time of a run in nanoseconds, 0 for no limit
+     */
+    private long timeLimit = 0;
+
+    /**
+     * System.nanoTime() when the current run should stop
+     */
+    private long deadline;
+
+    /**
+     * number of evaluated nodes when cancellation and limits are checked next time
+     */
+    private long nextCheck;
+
     /**
      * constructor
      *
@@ -30,82 +103,440 @@ public class JetBrainsInterpreter {
         if (programNode.getType() != JetBrainsAstNodeType.PROGRAM)
             throw new IllegalArgumentException("AST-tree is not a PROGRAM!");
         this.programNode = programNode;
+        this.resolvedProgram = null;
+    }
+
+    /**
+     * constructor for a program linked by JetBrainsResolver
+     *
+     * @param resolvedProgram linked program
+     */
+    public JetBrainsInterpreter(JetBrainsResolvedProgram resolvedProgram) {
+        this.programNode = null;
+        this.resolvedProgram = resolvedProgram;
     }
 
     /**
      * execute node
+     * nodes are walked with an explicit stack of unfinished nodes and a stack of their values,
+     * so nesting of the program doesn't grow the Java call stack
+     *
+     * @param root node to execute
+     * @return result of executing if needed
+     * @throws InterpretException if has ParseErrors
+     */
+    private int executeNode(JetBrainsAstNode root) throws InterpretException {
+        // unfinished nodes and number of their finished steps
+        JetBrainsAstNode[] nodes = new JetBrainsAstNode[16];
+        int[] steps = new int[16];
+        int top = 0;
+        nodes[0] = root;
+        // every finished node leaves one value
+        JetBrainsIntBuffer values = new JetBrainsIntBuffer();
+
+        while (top >= 0) {
+            JetBrainsAstNode node = nodes[top];
+            int step = steps[top];
+            JetBrainsAstNode next = null;
+            if (step == 0)
+                evaluate();
+            switch (node.getType()) {
+
+                case UNKNOWN:
+                    throw new IllegalArgumentException("Undefined type of AST-node!");
+                case INTEGER:
+                    values.accept(Integer.parseInt(node.getText()));
+                    break;
+                case IDENTIFIER: {
+                    int slot = slot(node.getSymbol(), node.getText());
+                    if (!assigned[slot])
+                        throw new InterpretException("Undeclared identifier");
+                    values.accept(frame[slot]);
+                    break;
+                }
+                case EXPRESSION:
+                case STATEMENT:
+                case PROGRAM:
+                case BLOCK_STATEMENT:
+                case SIMPLE_EXPRESSION:
+                    // value of child is value of node
+                    if (step == 0)
+                        next = node.getChild(0);
+                    break;
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION: {
+                    if (step < 2) {
+                        next = node.getChild(step);
+                        break;
+                    }
+                    int right = values.pop();
+                    int left = values.pop();
+                    if (node.getType() == JetBrainsAstNodeType.CONDITION_EXPRESSION) {
+                        if (node.getText().equals("<"))
+                            values.accept(left < right ? 1 : 0);
+                        else
+                            values.accept(left > right ? 1 : 0);
+                    } else if (node.getType() == JetBrainsAstNodeType.PLUS_MINUS_EXPRESSION) {
+                        if (node.getText().equals("+"))
+                            values.accept(left + right);
+                        else
+                            values.accept(left - right);
+                    } else {
+                        if (node.getText().equals("*"))
+                            values.accept(left * right);
+                        else
+                            values.accept(left / right);
+                    }
+                    break;
+                }
+                case EXPRESSION_STATEMENT: // PRINT
+                    if (step == 0)
+                        next = node.getChild(0);
+                    else
+                        sink.accept(values.peek());
+                    break;
+                case IF_STATEMENT:
+                    if (step == 0)
+                        next = node.getChild(0);
+                    else if (step == 1 && values.pop() != 0)
+                        next = node.getChild(1);
+                    else if (step == 1)
+                        values.accept(0);
+                    break;
+                case ASSIGN_STATEMENT:
+                    if (step == 0)
+                        next = node.getChild(1);
+                    else {
+                        JetBrainsAstNode identifier = node.getChild(0);
+                        int slot = slot(identifier.getSymbol(), identifier.getText());
+                        frame[slot] = values.peek();
+                        assigned[slot] = true;
+                    }
+                    break;
+                case STATEMENT_LIST:
+                    if (step > 0)
+                        values.pop();
+                    if (step < node.childCount())
+                        next = node.getChild(step);
+                    else
+                        values.accept(1);
+                    break;
+                case PARSE_ERROR:
+                    throw new InterpretException(node.getText());
+                default:
+                    throw new IllegalArgumentException("Unknown type of operation");
+            }
+
+            if (next == null) {
+                --top;
+                continue;
+            }
+            steps[top] = step + 1;
+            if (++top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                steps = Arrays.copyOf(steps, top * 2);
+            }
+            nodes[top] = next;
+            steps[top] = 0;
+        }
+        return values.pop();
+    }
+
+    /**
+     * execute linked node, walks the nodes with explicit stacks like executeNode
      *
-     * @param node node to execute
+     * @param root node to execute
      * @return result of executing if needed
      * @throws InterpretException if has ParseErrors
      */
-    private int executeNode(JetBrainsAstNode node) throws InterpretException {
-        switch (node.getType()) {
-
-            case UNKNOWN:
-                throw new IllegalArgumentException("Undefined type of AST-node!");
-            case INTEGER:
-                return Integer.parseInt(node.getText());
-            case IDENTIFIER:
-                if (varTable.containsKey(node.getText()))
-                    return varTable.get(node.getText());
-                else
-                    throw new InterpretException("Undeclared identifier");
-            case EXPRESSION:
-            case STATEMENT:
-            case PROGRAM:
-            case BLOCK_STATEMENT:
-            case SIMPLE_EXPRESSION:
-                return executeNode(node.getChild(0));
-            case CONDITION_EXPRESSION:
-                if (node.getText().equals("<")) {
-                    return (executeNode(node.getChild(0)) < executeNode(node.getChild(1))) ? 1 : 0;
-                } else {
-                    return (executeNode(node.getChild(0)) > executeNode(node.getChild(1))) ? 1 : 0;
+    private int executeResolved(JetBrainsResolvedNode root) throws InterpretException {
+        // unfinished nodes and number of their finished steps
+        JetBrainsResolvedNode[] nodes = new JetBrainsResolvedNode[16];
+        int[] steps = new int[16];
+        int top = 0;
+        nodes[0] = root;
+        // every finished node leaves one value
+        JetBrainsIntBuffer values = new JetBrainsIntBuffer();
+
+        while (top >= 0) {
+            JetBrainsResolvedNode node = nodes[top];
+            int step = steps[top];
+            JetBrainsResolvedNode next = null;
+            if (step == 0)
+                evaluate();
+            switch (node.getType()) {
+                case INTEGER:
+                    values.accept(node.getText() == null ? node.getValue() : Integer.parseInt(node.getText()));
+                    break;
+                case IDENTIFIER:
+                    if (!assigned[node.getValue()])
+                        throw new InterpretException("Undeclared identifier");
+                    values.accept(frame[node.getValue()]);
+                    break;
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION: {
+                    if (step < 2) {
+                        next = node.getChild(step);
+                        break;
+                    }
+                    int right = values.pop();
+                    int left = values.pop();
+                    switch (node.getValue()) {
+                        case '<':
+                            values.accept(left < right ? 1 : 0);
+                            break;
+                        case '>':
+                            values.accept(left > right ? 1 : 0);
+                            break;
+                        case '+':
+                            values.accept(left + right);
+                            break;
+                        case '-':
+                            values.accept(left - right);
+                            break;
+                        case '*':
+                            values.accept(left * right);
+                            break;
+                        default:
+                            values.accept(left / right);
+                    }
+                    break;
                 }
-            case PLUS_MINUS_EXPRESSION:
-                if (node.getText().equals("+"))
-                    return executeNode(node.getChild(0)) + executeNode(node.getChild(1));
-                else
-                    return executeNode(node.getChild(0)) - executeNode(node.getChild(1));
-            case MULTIPLY_DIVISION_EXPRESSION:
-                if (node.getText().equals("*"))
-                    return executeNode(node.getChild(0)) * executeNode(node.getChild(1));
-                else
-                    return executeNode(node.getChild(0)) / executeNode(node.getChild(1));
-            case EXPRESSION_STATEMENT: // PRINT
-                int res = executeNode(node.getChild(0));
-                output.add(res);
-                return res;
-            case IF_STATEMENT:
-                if (executeNode(node.getChild(0)) != 0)
-                    return executeNode(node.getChild(1));
-                return 0;
-            case ASSIGN_STATEMENT:
-                varTable.put(node.getChild(0).getText(), executeNode(node.getChild(1)));
-                return varTable.get(node.getChild(0).getText());
-            case STATEMENT_LIST:
-                for (int i = 0; i < node.childCount(); ++i)
-                    executeNode(node.getChild(i));
-                return 1;
-            case PARSE_ERROR:
-                throw new InterpretException(node.getText());
-            default:
-                throw new IllegalArgumentException("Unknown type of operation");
+                case EXPRESSION_STATEMENT: // PRINT
+                    if (step == 0)
+                        next = node.getChild(0);
+                    else
+                        sink.accept(values.peek());
+                    break;
+                case IF_STATEMENT:
+                    if (step == 0)
+                        next = node.getChild(0);
+                    else if (step == 1 && values.pop() != 0)
+                        next = node.getChild(1);
+                    else if (step == 1)
+                        values.accept(0);
+                    break;
+                case ASSIGN_STATEMENT:
+                    if (step == 0)
+                        next = node.getChild(0);
+                    else {
+                        frame[node.getValue()] = values.peek();
+                        assigned[node.getValue()] = true;
+                    }
+                    break;
+                case STATEMENT_LIST:
+                    if (step > 0)
+                        values.pop();
+                    if (step < node.childCount())
+                        next = node.getChild(step);
+                    else
+                        values.accept(1);
+                    break;
+                case PARSE_ERROR:
+                    throw new InterpretException(node.getText());
+                case UNKNOWN:
+                    throw new IllegalArgumentException("Undefined type of AST-node!");
+                default:
+                    throw new IllegalArgumentException("Unknown type of operation");
+            }
+
+            if (next == null) {
+                --top;
+                continue;
+            }
+            steps[top] = step + 1;
+            if (++top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                steps = Arrays.copyOf(steps, top * 2);
+            }
+            nodes[top] = next;
+            steps[top] = 0;
+        }
+        return values.pop();
+    }
+
+    /**
+     * find slot of a variable, the name is hashed only if the symbol wasn't seen
+     *
+     * @param symbol id of name OR -1
+     * @param name   name of variable
+     * @return slot in frame
+     */
+    private int slot(int symbol, String name) {
+        if (symbol >= 0 && symbol < symbolNames.length && symbolNames[symbol] == name)
+            return symbolSlots[symbol];
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(name, slot);
+            if (slot == frame.length) {
+                frame = Arrays.copyOf(frame, Math.max(16, 2 * slot));
+                assigned = Arrays.copyOf(assigned, frame.length);
+            }
         }
+        if (symbol >= 0) {
+            if (symbol >= symbolNames.length) {
+                int length = Math.max(symbol + 1, Math.max(16, 2 * symbolNames.length));
+                symbolNames = Arrays.copyOf(symbolNames, length);
+                symbolSlots = Arrays.copyOf(symbolSlots, length);
+            }
+            symbolNames[symbol] = name;
+            symbolSlots[symbol] = slot;
+        }
+        return slot;
+    }
+
+    /**
+     * count an evaluated node, cancellation and limits are checked once per CHECK_INTERVAL nodes
+     *
+     * @throws InterpretException if the run is cancelled or a limit is exceeded
+     */
+    private void evaluate() throws InterpretException {
+        if (++evaluated >= nextCheck)
+            checkLimits();
+    }
+
+    private void checkLimits() throws InterpretException {
+        if (cancelled)
+            throw new InterpretException("Run is cancelled");
+        if (evaluated > operationLimit)
+            throw new InterpretException("Operation limit of " + operationLimit + " is exceeded");
+        if (deadline != 0 && System.nanoTime() - deadline > 0)
+            throw new InterpretException("Time limit of " + TimeUnit.NANOSECONDS.toMillis(timeLimit) +
+                    " ms is exceeded");
+        nextCheck = evaluated + Math.min(CHECK_INTERVAL, operationLimit - evaluated + 1);
+    }
+
+    /**
+     * stop the run from another thread, the run fails with InterpretException soon
+     * a cancelled interpreter can't be run again
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * limit the number of nodes a run may evaluate
+     *
+     * @param operationLimit the largest number of evaluated nodes
+     */
+    public void setOperationLimit(long operationLimit) {
+        if (operationLimit < 0)
+            throw new IllegalArgumentException("Operation limit should be non-negative");
+        this.operationLimit = operationLimit;
+    }
+
+    /**
+     * limit time of a run
+     *
+     * @param timeLimit the longest time, 0 for no limit
+     * @param unit      unit of time
+     */
+    public void setTimeLimit(long timeLimit, TimeUnit unit) {
+        if (timeLimit < 0)
+            throw new IllegalArgumentException("Time limit should be non-negative");
+        this.timeLimit = unit.toNanos(timeLimit);
     }
 
     /**
      * execute a program
+     * linked program fails before the run if it reads identifiers which are never assigned
      *
      * @return output of a program
-     * @throws InterpretException if program has ParseErrors
+     * @throws InterpretException if program has ParseErrors, is cancelled or exceeds a limit
      */
     public ArrayList<Integer> execute() throws InterpretException {
-        executeNode(programNode);
+        execute(output::add);
         return output;
     }
 
+    /**
+     * execute a program and pass its output to a sink as soon as it's printed
+     * linked program fails before the run if it reads identifiers which are never assigned
+     *
+     * @param sink receiver of output, it gets values printed before an exception too
+     * @throws InterpretException if program has ParseErrors, is cancelled or exceeds a limit
+     */
+    public void execute(IntConsumer sink) throws InterpretException {
+        long start = JetBrainsMetrics.start();
+        // output is counted only for metrics, a disabled run passes values straight to the sink
+        this.sink = start == JetBrainsMetrics.OFF ? sink : value -> {
+            ++printed;
+            sink.accept(value);
+        };
+        begin();
+        try {
+            run();
+        } finally {
+            JetBrainsMetrics.executed(start, evaluated, printed);
+        }
+    }
+
+    /**
+     * reset counters and start the time limit before a run
+     */
+    void begin() {
+        evaluated = 0;
+        printed = 0;
+        nextCheck = 0;
+        deadline = timeLimit > 0 ? System.nanoTime() + timeLimit : 0;
+    }
+
+    /**
+     * execute one top-level statement with variables left by statements executed before, used by
+     * JetBrainsParallelInterpreter, begin() should be called before the first statement
+     *
+     * @param statement Statement node OR ParseError of the program
+     * @param sink      receiver of output
+     * @throws InterpretException if statement has ParseErrors, is cancelled or exceeds a limit
+     */
+    void executeStatement(JetBrainsAstNode statement, IntConsumer sink) throws InterpretException {
+        this.sink = sink;
+        executeNode(statement);
+    }
+
+    /**
+     * @param name name of variable
+     * @return value of variable OR null if it isn't assigned
+     */
+    Integer getVariable(String name) {
+        Integer slot = slots.get(name);
+        return slot != null && assigned[slot] ? frame[slot] : null;
+    }
+
+    /**
+     * @param name  name of variable
+     * @param value new value of variable
+     */
+    void setVariable(String name, int value) {
+        int slot = slot(-1, name);
+        frame[slot] = value;
+        assigned[slot] = true;
+    }
+
+    /**
+     * @return number of nodes evaluated since the last begin()
+     */
+    long getEvaluated() {
+        return evaluated;
+    }
+
+    private void run() throws InterpretException {
+        if (resolvedProgram == null) {
+            executeNode(programNode);
+            return;
+        }
+        frame = new int[resolvedProgram.slotCount()];
+        assigned = new boolean[resolvedProgram.slotCount()];
+        executeResolved(resolvedProgram.getRoot());
+    }
+
     /**
      * execute a program
      *
@@ -118,4 +549,26 @@ public class JetBrainsInterpreter {
         return mei.execute();
     }
 
+    /**
+     * execute a program and pass its output to a sink as soon as it's printed
+     *
+     * @param programNode Program node to execute
+     * @param sink        receiver of output
+     * @throws InterpretException if program has ParseErrors
+     */
+    public static void execute(JetBrainsAstNode programNode, IntConsumer sink) throws InterpretException {
+        new JetBrainsInterpreter(programNode).execute(sink);
+    }
+
+    /**
+     * execute a linked program
+     *
+     * @param resolvedProgram program linked by JetBrainsResolver
+     * @return output of a program
+     * @throws InterpretException if program has ParseErrors or reads undeclared identifiers
+     */
+    public static ArrayList<Integer> execute(JetBrainsResolvedProgram resolvedProgram) throws InterpretException {
+        return new JetBrainsInterpreter(resolvedProgram).execute();
+    }
+
 }
@@ -0,0 +1,222 @@
+package sdfomin.parser;
+
+import java.util.Arrays;
+
+/**
+ * Splits text to tokens in one pass over symbols
+ * Tokens are kept in one int array as (kind, start, end) and are read lazily when the parser needs them,
+ * so parsing from the middle of a text doesn't read the whole text
+ */
+public class JetBrainsLexer {
+
+    /**
+     * kinds of tokens
+     */
+    public static final int EOF = 0;
+    public static final int WHITESPACE = 1;
+    public static final int IDENTIFIER = 2;
+    public static final int INTEGER = 3;
+    public static final int IF = 4;
+    public static final int LEFT_PARENTHESIS = 5;
+    public static final int RIGHT_PARENTHESIS = 6;
+    public static final int LEFT_BRACE = 7;
+    public static final int RIGHT_BRACE = 8;
+    public static final int LESS = 9;
+    public static final int GREATER = 10;
+    public static final int PLUS = 11;
+    public static final int MINUS = 12;
+    public static final int MULTIPLY = 13;
+    public static final int DIVIDE = 14;
+    public static final int SEMICOLON = 15;
+    public static final int ASSIGN = 16;
+    public static final int AT = 17;
+    public static final int UNKNOWN = 18;
+
+    /**
+     * symbols between operands
+     */
+    public static final String DEFAULT_WHITESPACES = " \n\r\t";
+
+    /**
+     * texts of tokens which are always the same
+     */
+    private static final String[] TEXTS = {null, null, null, null, "if", "(", ")", "{", "}", "<", ">", "+", "-", "*",
+            "/", ";", "=", "@", null};
+
+    /**
+     * kinds of ASCII symbols, IDENTIFIER and INTEGER mean the first symbol of a word or a number
+     */
+    private static final byte[] KINDS = new byte[128];
+
+    static {
+        Arrays.fill(KINDS, (byte) UNKNOWN);
+        // text ends on the symbol with code 0 too
+        KINDS[0] = EOF;
+        for (char c : DEFAULT_WHITESPACES.toCharArray())
+            KINDS[c] = WHITESPACE;
+        for (char c = 'a'; c <= 'z'; ++c)
+            KINDS[c] = IDENTIFIER;
+        for (char c = 'A'; c <= 'Z'; ++c)
+            KINDS[c] = IDENTIFIER;
+        for (char c = '0'; c <= '9'; ++c)
+            KINDS[c] = INTEGER;
+        for (int kind = LEFT_PARENTHESIS; kind < UNKNOWN; ++kind)
+            KINDS[TEXTS[kind].charAt(0)] = (byte) kind;
+    }
+
+    /**
+     * text to split
+     */
+    private final CharSequence source;
+
+    /**
+     * tokens as (kind, start, end)
+     */
+    private int[] tokens = new int[3 * 64];
+
+    /**
+     * number of read tokens
+     */
+    private int count = 0;
+
+    /**
+     * position where the next token starts
+     */
+    private int pos;
+
+    /**
+     * construct a lexer
+     *
+     * @param source text to split
+     * @param pos    position of the first token
+     */
+    public JetBrainsLexer(CharSequence source, int pos) {
+        this.source = source;
+        this.pos = pos;
+    }
+
+    public JetBrainsLexer(CharSequence source) {
+        this(source, 0);
+    }
+
+    /**
+     * @param index index of token
+     * @return kind of token
+     */
+    public int kind(int index) {
+        int i = read(index);
+        return tokens[3 * i];
+    }
+
+    /**
+     * @param index index of token
+     * @return position of the first symbol of token
+     */
+    public int start(int index) {
+        int i = read(index);
+        return tokens[3 * i + 1];
+    }
+
+    /**
+     * @param index index of token
+     * @return position after the last symbol of token
+     */
+    public int end(int index) {
+        int i = read(index);
+        return tokens[3 * i + 2];
+    }
+
+    /**
+     * @param kind kind of token
+     * @return text of token which is always the same OR null for identifiers and integers
+     */
+    public static String getText(int kind) {
+        return TEXTS[kind];
+    }
+
+    /**
+     * read tokens up to index
+     *
+     * @param index index of token
+     * @return index of token, tokens after EOF are EOF
+     */
+    private int read(int index) {
+        while (index >= count) {
+            if (count > 0 && tokens[3 * (count - 1)] == EOF)
+                return count - 1;
+            readToken();
+        }
+        return index;
+    }
+
+    /**
+     * read one token from pos
+     */
+    private void readToken() {
+        int start = pos;
+        int length = source.length();
+        int kind = start < length ? kindOf(source.charAt(start)) : EOF;
+        int end = start;
+        switch (kind) {
+            case EOF:
+                break;
+            case WHITESPACE:
+                do {
+                    ++end;
+                } while (end < length && isWhitespace(source.charAt(end)));
+                break;
+            case IDENTIFIER:
+                // word starting with "if" is always split after it
+                if (source.charAt(start) == 'i' && start + 1 < length && source.charAt(start + 1) == 'f') {
+                    kind = IF;
+                    end = start + 2;
+                    break;
+                }
+                do {
+                    ++end;
+                } while (end < length && isLetterOrDigit(source.charAt(end)));
+                break;
+            case INTEGER:
+                do {
+                    ++end;
+                } while (end < length && isDigit(source.charAt(end)));
+                break;
+            default:
+                end = start + 1;
+        }
+
+        if (3 * count + 3 > tokens.length)
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        tokens[3 * count] = kind;
+        tokens[3 * count + 1] = start;
+        tokens[3 * count + 2] = end;
+        ++count;
+        pos = end;
+    }
+
+    private static int kindOf(char c) {
+        if (c < KINDS.length)
+            return KINDS[c];
+        if (Character.isLetter(c))
+            return IDENTIFIER;
+        if (Character.isDigit(c))
+            return INTEGER;
+        return UNKNOWN;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c < KINDS.length && KINDS[c] == WHITESPACE;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        if (c < KINDS.length)
+            return KINDS[c] == IDENTIFIER || KINDS[c] == INTEGER;
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        if (c < KINDS.length)
+            return KINDS[c] == INTEGER;
+        return Character.isDigit(c);
+    }
+}
@@ -0,0 +1,298 @@
+package sdfomin.parser;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counters and latency histograms of parsing, tree checks, execution and analysis of the editor
+ * Stages call start() and pass its result back when they finish. When metrics are disabled,
+ * start() is one read of a volatile flag and the finishing call returns at once, so metrics can always stay in code.
+ * Metrics are enabled by -Dsdfomin.metrics=true or through the MBean,
+ * -Dsdfomin.metrics.dump=N prints them every N seconds after install().
+ */
+public final class JetBrainsMetrics implements JetBrainsMetricsMBean {
+
+    /**
+     * name of the registered MBean
+     */
+    public static final String OBJECT_NAME = "sdfomin.parser:type=Metrics";
+
+    /**
+     * result of start() when metrics are disabled
+     */
+    static final long OFF = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = Boolean.getBoolean("sdfomin.metrics");
+
+    private static final JetBrainsMetrics INSTANCE = new JetBrainsMetrics();
+
+    /**
+     * true if the MBean is registered
+     */
+    private static boolean registered = false;
+
+    /**
+     * times in nanoseconds
+     */
+    private final JetBrainsHistogram parseTime = new JetBrainsHistogram();
+    private final JetBrainsHistogram checkTime = new JetBrainsHistogram();
+    private final JetBrainsHistogram runTime = new JetBrainsHistogram();
+    private final JetBrainsHistogram analysisTime = new JetBrainsHistogram();
+
+    private final LongAdder parsedNodes = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder evaluatedNodes = new LongAdder();
+    private final LongAdder outputValues = new LongAdder();
+
+    private JetBrainsMetrics() {
+    }
+
+    public static JetBrainsMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * start measuring a stage
+     *
+     * @return start time or OFF if metrics are disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : OFF;
+    }
+
+    /**
+     * finish parsing
+     *
+     * @param start   result of start()
+     * @param program parsed tree
+     */
+    static void parsed(long start, JetBrainsAstNode program) {
+        if (start == OFF)
+            return;
+        INSTANCE.parseTime.record(System.nanoTime() - start);
+        INSTANCE.parsedNodes.add(program.getNodeCount() + 1);
+        INSTANCE.parseErrors.add(program.getErrorCount());
+    }
+
+    /**
+     * finish a comparison of trees
+     *
+     * @param start result of start()
+     */
+    static void checked(long start) {
+        if (start == OFF)
+            return;
+        INSTANCE.checkTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * finish execution of a program, including a failed one
+     *
+     * @param start     result of start()
+     * @param evaluated number of evaluated nodes
+     * @param printed   number of printed values
+     */
+    static void executed(long start, long evaluated, long printed) {
+        if (start == OFF)
+            return;
+        INSTANCE.runTime.record(System.nanoTime() - start);
+        INSTANCE.evaluatedNodes.add(evaluated);
+        INSTANCE.outputValues.add(printed);
+    }
+
+    /**
+     * finish analysis of an edit in the editor
+     *
+     * @param start result of start()
+     */
+    public static void analyzed(long start) {
+        if (start == OFF)
+            return;
+        INSTANCE.analysisTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * register the MBean in the platform MBean server and start the periodic dump if it's set by properties
+     * calls after the first one do nothing
+     */
+    public static synchronized void install() {
+        if (registered)
+            return;
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ex) {
+            // registered by another class loader
+        } catch (JMException ex) {
+            System.err.println("Metrics aren't registered: " + ex.getMessage());
+        }
+        long period = Long.getLong("sdfomin.metrics.dump", 0);
+        if (period > 0)
+            startDump(TimeUnit.SECONDS.toMillis(period), System.err::println);
+    }
+
+    /**
+     * print metrics periodically from a daemon thread
+     *
+     * @param periodMillis period in milliseconds
+     * @param out          receiver of text
+     */
+    public static void startDump(long periodMillis, Consumer<String> out) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (enabled)
+                out.accept(INSTANCE.dump());
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String line(String stage, JetBrainsHistogram time) {
+        return String.format("%s: count %d, ms p50 %.3f p99 %.3f max %.3f", stage, time.getCount(),
+                millis(time.getPercentile(50)), millis(time.getPercentile(99)), millis(time.getMax()));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        JetBrainsMetrics.enabled = enabled;
+    }
+
+    @Override
+    public long getParseCount() {
+        return parseTime.getCount();
+    }
+
+    @Override
+    public double getParseTimeP50() {
+        return millis(parseTime.getPercentile(50));
+    }
+
+    @Override
+    public double getParseTimeP99() {
+        return millis(parseTime.getPercentile(99));
+    }
+
+    @Override
+    public double getParseTimeMax() {
+        return millis(parseTime.getMax());
+    }
+
+    @Override
+    public long getParsedNodes() {
+        return parsedNodes.sum();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public long getCheckCount() {
+        return checkTime.getCount();
+    }
+
+    @Override
+    public double getCheckTimeP50() {
+        return millis(checkTime.getPercentile(50));
+    }
+
+    @Override
+    public double getCheckTimeP99() {
+        return millis(checkTime.getPercentile(99));
+    }
+
+    @Override
+    public double getCheckTimeMax() {
+        return millis(checkTime.getMax());
+    }
+
+    @Override
+    public long getRunCount() {
+        return runTime.getCount();
+    }
+
+    @Override
+    public double getRunTimeP50() {
+        return millis(runTime.getPercentile(50));
+    }
+
+    @Override
+    public double getRunTimeP99() {
+        return millis(runTime.getPercentile(99));
+    }
+
+    @Override
+    public double getRunTimeMax() {
+        return millis(runTime.getMax());
+    }
+
+    @Override
+    public long getEvaluatedNodes() {
+        return evaluatedNodes.sum();
+    }
+
+    @Override
+    public long getOutputValues() {
+        return outputValues.sum();
+    }
+
+    @Override
+    public long getAnalysisCount() {
+        return analysisTime.getCount();
+    }
+
+    @Override
+    public double getAnalysisTimeP50() {
+        return millis(analysisTime.getPercentile(50));
+    }
+
+    @Override
+    public double getAnalysisTimeP99() {
+        return millis(analysisTime.getPercentile(99));
+    }
+
+    @Override
+    public double getAnalysisTimeMax() {
+        return millis(analysisTime.getMax());
+    }
+
+    @Override
+    public String dump() {
+        return line("parse", parseTime) + ", nodes " + getParsedNodes() + ", errors " + getParseErrors() + "\n" +
+                line("check", checkTime) + "\n" +
+                line("run", runTime) + ", evaluated nodes " + getEvaluatedNodes() +
+                ", output values " + getOutputValues() + "\n" +
+                line("analysis", analysisTime);
+    }
+
+    @Override
+    public void reset() {
+        parseTime.reset();
+        checkTime.reset();
+        runTime.reset();
+        analysisTime.reset();
+        parsedNodes.reset();
+        parseErrors.reset();
+        evaluatedNodes.reset();
+        outputValues.reset();
+    }
+}
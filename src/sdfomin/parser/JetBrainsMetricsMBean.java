@@ -0,0 +1,70 @@
+package sdfomin.parser;
+
+/**
+ * Management interface of JetBrainsMetrics, times are in milliseconds
+ */
+public interface JetBrainsMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getParseCount();
+
+    double getParseTimeP50();
+
+    double getParseTimeP99();
+
+    double getParseTimeMax();
+
+    /**
+     * @return number of nodes in parsed trees
+     */
+    long getParsedNodes();
+
+    /**
+     * @return number of PARSE_ERROR nodes in parsed trees
+     */
+    long getParseErrors();
+
+    long getCheckCount();
+
+    double getCheckTimeP50();
+
+    double getCheckTimeP99();
+
+    double getCheckTimeMax();
+
+    long getRunCount();
+
+    double getRunTimeP50();
+
+    double getRunTimeP99();
+
+    double getRunTimeMax();
+
+    /**
+     * @return number of nodes evaluated by the interpreter
+     */
+    long getEvaluatedNodes();
+
+    /**
+     * @return number of values printed by programs
+     */
+    long getOutputValues();
+
+    long getAnalysisCount();
+
+    double getAnalysisTimeP50();
+
+    double getAnalysisTimeP99();
+
+    double getAnalysisTimeMax();
+
+    /**
+     * @return all metrics as text
+     */
+    String dump();
+
+    void reset();
+}
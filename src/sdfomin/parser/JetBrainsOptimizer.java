@@ -0,0 +1,600 @@
+package sdfomin.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+import static sdfomin.parser.JetBrainsAstNodeType.*;
+
+/**
+ * Optional stage between JetBrainsParser and execution, it gives a new tree with the same output:
+ * operations over constants are folded, IF_STATEMENT with known condition is replaced with its result
+ * and subexpressions repeated in a straight-line region are computed once into temporary variables.
+ * Divisions by zero are never folded or moved, so they fail in the same place.
+ */
+public class JetBrainsOptimizer {
+
+    /**
+     * prefix of temporary variables, identifiers of programs can't contain it
+     */
+    public static final String TEMPORARY_PREFIX = "$";
+
+    /**
+     * number of created temporary variables
+     */
+    private int temporaries = 0;
+
+    private JetBrainsOptimizer() {
+    }
+
+    /**
+     * optimize a program
+     * nested statements and expressions are walked with explicit stacks, so nesting is limited only by memory
+     *
+     * @param programNode Program node, it isn't changed
+     * @return optimized Program node
+     */
+    public static JetBrainsAstNode optimize(JetBrainsAstNode programNode) {
+        if (programNode.getType() != PROGRAM)
+            throw new IllegalArgumentException("AST-tree is not a PROGRAM!");
+        JetBrainsOptimizer optimizer = new JetBrainsOptimizer();
+        return new JetBrainsAstNode(PROGRAM, optimizer.optimizeList(programNode.getChild(0)));
+    }
+
+    /**
+     * unfinished StatementList
+     */
+    private static final class Frame {
+
+        /**
+         * old StatementList node
+         */
+        private final JetBrainsAstNode list;
+
+        /**
+         * variables which are surely assigned, it's updated by the statements of list
+         */
+        private final Set<String> assigned;
+
+        /**
+         * variables which are surely assigned before the list
+         */
+        private final Set<String> before;
+
+        /**
+         * folded conditions of IF_STATEMENT nodes between the enclosing list and BlockStatement of list
+         */
+        private final List<JetBrainsAstNode> conditions;
+
+        /**
+         * folded statements
+         */
+        private final List<JetBrainsAstNode> statements = new ArrayList<>();
+
+        /**
+         * index of the next statement of list
+         */
+        private int index = 0;
+
+        private Frame(JetBrainsAstNode list, Set<String> assigned, List<JetBrainsAstNode> conditions) {
+            this.list = list;
+            this.assigned = assigned;
+            this.before = new HashSet<>(assigned);
+            this.conditions = conditions;
+        }
+    }
+
+    /**
+     * optimize statements of the list of Program and of nested lists
+     *
+     * @param root StatementList node of Program
+     * @return new StatementList node
+     */
+    private JetBrainsAstNode optimizeList(JetBrainsAstNode root) {
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(root, new HashSet<>(), Collections.emptyList()));
+        while (true) {
+            Frame top = frames.peek();
+            JetBrainsAstNode statement;
+            if (top.index == top.list.childCount()) {
+                frames.pop();
+                JetBrainsAstNode result = new JetBrainsAstNode(STATEMENT_LIST);
+                for (var x : eliminateSubexpressions(top.statements, top.before))
+                    result.addChild(x);
+                if (frames.isEmpty())
+                    return result;
+                statement = wrap(new JetBrainsAstNode(STATEMENT, new JetBrainsAstNode(BLOCK_STATEMENT, result)),
+                        top.conditions);
+                top = frames.peek();
+            } else {
+                JetBrainsAstNode x = top.list.getChild(top.index++);
+                if (x.getType() != STATEMENT) { // Extra symbol error
+                    top.statements.add(x);
+                    continue;
+                }
+                // walk down to the statement which IF_STATEMENT nodes run
+                List<JetBrainsAstNode> conditions = new ArrayList<>();
+                statement = x;
+                while (statement != null && statement.childCount() > 0 &&
+                        statement.getChild(0).getType() == IF_STATEMENT) {
+                    JetBrainsAstNode node = statement.getChild(0);
+                    JetBrainsAstNode condition = foldExpression(node.getChild(0));
+                    Integer value = constant(condition);
+                    if (value == null)
+                        conditions.add(condition);
+                    statement = value == null || value != 0 ? node.getChild(1) : null;
+                }
+                if (statement != null && statement.childCount() > 0 &&
+                        statement.getChild(0).getType() == BLOCK_STATEMENT) {
+                    JetBrainsAstNode list = statement.getChild(0).getChild(0);
+                    frames.push(new Frame(list, new HashSet<>(top.assigned), conditions));
+                    continue;
+                }
+                statement = wrap(statement == null ? null : foldStatement(statement), conditions);
+            }
+
+            if (statement != null) {
+                top.statements.add(statement);
+                String name = assignedName(statement);
+                if (name != null)
+                    top.assigned.add(name);
+            }
+        }
+    }
+
+    /**
+     * put a statement into IF_STATEMENT nodes with conditions which aren't known
+     *
+     * @param statement  folded Statement node OR null if it does nothing
+     * @param conditions folded conditions, the first is the outermost
+     * @return new Statement node OR null if statement is null and there are no conditions
+     */
+    private static JetBrainsAstNode wrap(JetBrainsAstNode statement, List<JetBrainsAstNode> conditions) {
+        for (int i = conditions.size() - 1; i >= 0; --i) {
+            if (statement == null) // empty block instead of removed statement
+                statement = new JetBrainsAstNode(STATEMENT,
+                        new JetBrainsAstNode(BLOCK_STATEMENT, new JetBrainsAstNode(STATEMENT_LIST)));
+            statement = new JetBrainsAstNode(STATEMENT,
+                    new JetBrainsAstNode(IF_STATEMENT, conditions.get(i), statement));
+        }
+        return statement;
+    }
+
+    /**
+     * fold constants of a statement which isn't IF_STATEMENT or BLOCK_STATEMENT
+     *
+     * @param statement Statement node
+     * @return new Statement node
+     */
+    private static JetBrainsAstNode foldStatement(JetBrainsAstNode statement) {
+        if (statement.childCount() == 0)
+            return statement;
+        JetBrainsAstNode node = statement.getChild(0);
+        switch (node.getType()) {
+            case EXPRESSION_STATEMENT:
+                return new JetBrainsAstNode(STATEMENT,
+                        new JetBrainsAstNode(EXPRESSION_STATEMENT, foldExpression(node.getChild(0))));
+            case ASSIGN_STATEMENT:
+                return new JetBrainsAstNode(STATEMENT, new JetBrainsAstNode(ASSIGN_STATEMENT,
+                        node.getChild(0), foldExpression(node.getChild(1))));
+            default:
+                return statement;
+        }
+    }
+
+    /**
+     * walk expression in post-order with explicit stacks, so nesting doesn't grow the Java call stack
+     *
+     * @param root   expression node
+     * @param walked number of the first children of node which are walked before it
+     * @param finish result of node from results of its walked children
+     * @param <T>    type of results
+     * @return result of root
+     */
+    private static <T> T walk(JetBrainsAstNode root, ToIntFunction<JetBrainsAstNode> walked,
+                              BiFunction<JetBrainsAstNode, List<T>, T> finish) {
+        ArrayList<JetBrainsAstNode> nodes = new ArrayList<>();
+        // number of walked children and number of finished ones for every unfinished node
+        JetBrainsIntBuffer counts = new JetBrainsIntBuffer();
+        JetBrainsIntBuffer steps = new JetBrainsIntBuffer();
+        ArrayList<T> results = new ArrayList<>();
+        nodes.add(root);
+        counts.accept(walked.applyAsInt(root));
+        steps.accept(0);
+        while (!nodes.isEmpty()) {
+            JetBrainsAstNode node = nodes.get(nodes.size() - 1);
+            int step = steps.pop();
+            if (step < counts.peek()) {
+                steps.accept(step + 1);
+                JetBrainsAstNode child = node.getChild(step);
+                nodes.add(child);
+                counts.accept(walked.applyAsInt(child));
+                steps.accept(0);
+                continue;
+            }
+            nodes.remove(nodes.size() - 1);
+            counts.pop();
+            List<T> children = results.subList(results.size() - step, results.size());
+            T result = finish.apply(node, children);
+            children.clear();
+            results.add(result);
+        }
+        return results.get(0);
+    }
+
+    /**
+     * fold operations over constants
+     *
+     * @param root expression node
+     * @return new expression node
+     */
+    private static JetBrainsAstNode foldExpression(JetBrainsAstNode root) {
+        return walk(root, node -> {
+            switch (node.getType()) {
+                case EXPRESSION:
+                case SIMPLE_EXPRESSION:
+                    return 1;
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION:
+                    return 2;
+                default:
+                    return 0;
+            }
+        }, (node, children) -> {
+            switch (node.getType()) {
+                case EXPRESSION:
+                case SIMPLE_EXPRESSION:
+                    return new JetBrainsAstNode(node.getType(), node.getText(), children.get(0));
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION: {
+                    JetBrainsAstNode left = children.get(0);
+                    JetBrainsAstNode right = children.get(1);
+                    Integer a = constant(left);
+                    Integer b = constant(right);
+                    if (a != null && b != null && !(node.getType() == MULTIPLY_DIVISION_EXPRESSION &&
+                            !node.getText().equals("*") && b == 0)) {
+                        int value = evaluate(node, a, b);
+                        return new JetBrainsAstNode(SIMPLE_EXPRESSION,
+                                new JetBrainsAstNode(INTEGER, Integer.toString(value)));
+                    }
+                    return new JetBrainsAstNode(node.getType(), node.getText(), left, right);
+                }
+                default:
+                    return node;
+            }
+        });
+    }
+
+    /**
+     * @param node expression node
+     * @return value of expression if it's a constant, otherwise null
+     */
+    private static Integer constant(JetBrainsAstNode node) {
+        while (node.getType() == EXPRESSION || node.getType() == SIMPLE_EXPRESSION) {
+            if (node.childCount() != 1)
+                return null;
+            node = node.getChild(0);
+        }
+        if (node.getType() != INTEGER)
+            return null;
+        try {
+            return Integer.parseInt(node.getText());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * compute operation like JetBrainsInterpreter does
+     */
+    private static int evaluate(JetBrainsAstNode node, int a, int b) {
+        switch (node.getType()) {
+            case CONDITION_EXPRESSION:
+                if (node.getText().equals("<"))
+                    return a < b ? 1 : 0;
+                return a > b ? 1 : 0;
+            case PLUS_MINUS_EXPRESSION:
+                return node.getText().equals("+") ? a + b : a - b;
+            default:
+                return node.getText().equals("*") ? a * b : a / b;
+        }
+    }
+
+    /**
+     * @param statement Statement node
+     * @return name of variable which is assigned by statement OR null
+     */
+    private static String assignedName(JetBrainsAstNode statement) {
+        if (statement.childCount() == 0 || statement.getChild(0).getType() != ASSIGN_STATEMENT)
+            return null;
+        JetBrainsAstNode identifier = statement.getChild(0).getChild(0);
+        return identifier.getType() == IDENTIFIER ? identifier.getText() : null;
+    }
+
+    /**
+     * subexpression which is computed in a straight-line region several times
+     */
+    private static class Subexpression {
+        final int size;
+        // most subexpressions are found once
+        final List<JetBrainsAstNode> nodes = new ArrayList<>(2);
+        final JetBrainsIntBuffer statements = new JetBrainsIntBuffer(2);
+
+        Subexpression(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * operation or operand of a subexpression, operations refer to ids of their operands
+     */
+    private static final class Shape {
+        final JetBrainsAstNodeType type;
+        final String text;
+        final int left;
+        final int right;
+
+        Shape(JetBrainsAstNodeType type, String text, int left, int right) {
+            this.type = type;
+            this.text = text;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * type.hashCode() + Objects.hashCode(text)) + left) + right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shape))
+                return false;
+            Shape other = (Shape) o;
+            return type == other.type && left == other.left && right == other.right && Objects.equals(text, other.text);
+        }
+    }
+
+    /**
+     * description of subexpression while the statement is walked
+     */
+    private static class Term {
+        /**
+         * id of shape, equal subexpressions have equal ids
+         */
+        final int id;
+        final int size;
+        /**
+         * the latest assignment of variables of subexpression, equal ones with equal versions have equal values
+         */
+        final int version;
+        final Integer value;
+        final boolean safe;
+
+        Term(int id, int size, int version, Integer value, boolean safe) {
+            this.id = id;
+            this.size = size;
+            this.version = version;
+            this.value = value;
+            this.safe = safe;
+        }
+    }
+
+    /**
+     * ids of subexpressions, every subexpression gets an id in O(1) from ids of its operands
+     */
+    private final Map<Shape, Integer> shapes = new HashMap<>();
+
+    /**
+     * the latest assignments of variables, numbered by assignments
+     */
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    /**
+     * number of assignments walked by eliminateSubexpressions
+     */
+    private int assignments = 0;
+
+    /**
+     * @param shape operation or operand
+     * @return id of shape
+     */
+    private int id(Shape shape) {
+        return shapes.computeIfAbsent(shape, key -> shapes.size());
+    }
+
+    /**
+     * @param statement folded statement
+     * @return expression which is computed by statement OR null if statement ends a straight-line region
+     */
+    private static JetBrainsAstNode computed(JetBrainsAstNode statement) {
+        JetBrainsAstNode node = statement.getType() == STATEMENT && statement.childCount() > 0 ?
+                statement.getChild(0) : statement;
+        if (node.getType() == EXPRESSION_STATEMENT)
+            return node.getChild(0);
+        return assignedName(statement) != null ? node.getChild(1) : null;
+    }
+
+    /**
+     * compute subexpressions repeated between assignments of their variables once
+     * only expressions which can't fail are moved, so errors stay in the same statements
+     *
+     * @param statements folded statements of a list
+     * @param assigned   variables which are surely assigned before the list
+     * @return statements with temporary variables
+     */
+    private List<JetBrainsAstNode> eliminateSubexpressions(List<JetBrainsAstNode> statements, Set<String> assigned) {
+        assigned = new HashSet<>(assigned);
+        // subexpressions by ids and versions, an assignment changes versions of subexpressions with its variable
+        Map<Long, Subexpression> open = new HashMap<>();
+        List<Subexpression> closed = new ArrayList<>();
+        for (int i = 0; i < statements.size(); ++i) {
+            JetBrainsAstNode statement = statements.get(i);
+            JetBrainsAstNode expression = computed(statement);
+            if (expression == null) { // end of straight-line region
+                closed.addAll(open.values());
+                open.clear();
+                continue;
+            }
+            collect(expression, i, assigned, open);
+            String name = assignedName(statement);
+            if (name != null) {
+                // the value is computed before assignment, so the statement itself can use old subexpressions
+                versions.put(name, ++assignments);
+                assigned.add(name);
+            }
+        }
+        closed.addAll(open.values());
+
+        // bigger subexpressions first, their inner parts are computed inside of temporary variable
+        closed.sort(Comparator.comparingInt((Subexpression x) -> x.size).reversed());
+        // nodes inside of replaced occurrences except the first ones, they aren't computed anymore
+        Set<JetBrainsAstNode> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<JetBrainsAstNode, String> replaced = new IdentityHashMap<>();
+        Map<Integer, List<JetBrainsAstNode>> definitions = new HashMap<>();
+        for (var x : closed) {
+            List<Integer> live = new ArrayList<>();
+            for (int i = 0; i < x.nodes.size(); ++i)
+                if (!removed.contains(x.nodes.get(i)))
+                    live.add(i);
+            if (live.size() < 2)
+                continue;
+
+            String name = TEMPORARY_PREFIX + (++temporaries);
+            JetBrainsAstNode first = x.nodes.get(live.get(0));
+            for (int i : live) {
+                replaced.put(x.nodes.get(i), name);
+                if (i != live.get(0))
+                    removeBelow(x.nodes.get(i), removed);
+            }
+            definitions.computeIfAbsent(x.statements.get(live.get(0)), k -> new ArrayList<>())
+                    .add(0, first);
+        }
+        if (replaced.isEmpty())
+            return statements;
+
+        List<JetBrainsAstNode> result = new ArrayList<>();
+        for (int i = 0; i < statements.size(); ++i) {
+            for (var x : definitions.getOrDefault(i, Collections.emptyList())) {
+                JetBrainsAstNode value = new JetBrainsAstNode(x.getType(), x.getText(),
+                        replace(x.getChild(0), replaced), replace(x.getChild(1), replaced));
+                result.add(new JetBrainsAstNode(STATEMENT, new JetBrainsAstNode(ASSIGN_STATEMENT,
+                        new JetBrainsAstNode(IDENTIFIER, replaced.get(x)),
+                        new JetBrainsAstNode(EXPRESSION, value))));
+            }
+            JetBrainsAstNode statement = statements.get(i);
+            // other statements contain no replaced nodes, so nested lists aren't walked again
+            result.add(computed(statement) != null ? replace(statement, replaced) : statement);
+        }
+        return result;
+    }
+
+    /**
+     * add nodes below node to removed, subtrees of removed nodes are already removed, so every node is visited once
+     *
+     * @param node    replaced node
+     * @param removed removed nodes
+     */
+    private static void removeBelow(JetBrainsAstNode node, Set<JetBrainsAstNode> removed) {
+        ArrayDeque<JetBrainsAstNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty())
+            for (var x : stack.pop().getChildren())
+                if (removed.add(x))
+                    stack.push(x);
+    }
+
+    /**
+     * find subexpressions of expression which can be computed once
+     *
+     * @param root      expression node
+     * @param statement index of statement
+     * @param assigned  variables which are surely assigned before the statement
+     * @param open      subexpressions of current region by ids and versions
+     */
+    private void collect(JetBrainsAstNode root, int statement, Set<String> assigned, Map<Long, Subexpression> open) {
+        JetBrainsOptimizer.<Term>walk(root, node -> {
+            switch (node.getType()) {
+                case EXPRESSION:
+                case SIMPLE_EXPRESSION:
+                    return node.childCount() == 1 ? 1 : 0;
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION:
+                    return 2;
+                default:
+                    return 0;
+            }
+        }, (node, children) -> {
+            switch (node.getType()) {
+                case EXPRESSION:
+                case SIMPLE_EXPRESSION:
+                    // description of pure expression OR null
+                    return children.isEmpty() ? null : children.get(0);
+                case INTEGER: {
+                    Integer value = constant(node);
+                    return value == null ? null :
+                            new Term(id(new Shape(INTEGER, value.toString(), -1, -1)), 1, 0, value, true);
+                }
+                case IDENTIFIER:
+                    return new Term(id(new Shape(IDENTIFIER, node.getText(), -1, -1)), 1,
+                            versions.getOrDefault(node.getText(), 0), null, assigned.contains(node.getText()));
+                case CONDITION_EXPRESSION:
+                case PLUS_MINUS_EXPRESSION:
+                case MULTIPLY_DIVISION_EXPRESSION: {
+                    Term left = children.get(0);
+                    Term right = children.get(1);
+                    if (left == null || right == null)
+                        return null;
+
+                    boolean division = node.getType() == MULTIPLY_DIVISION_EXPRESSION && !node.getText().equals("*");
+                    boolean safe = left.safe && right.safe && (!division || (right.value != null && right.value != 0));
+                    Term term = new Term(id(new Shape(node.getType(), node.getText(), left.id, right.id)),
+                            left.size + right.size + 1, Math.max(left.version, right.version), null, safe);
+                    if (safe) {
+                        Subexpression subexpression = open.computeIfAbsent((long) term.id << 32 | term.version,
+                                k -> new Subexpression(term.size));
+                        subexpression.nodes.add(node);
+                        subexpression.statements.accept(statement);
+                    }
+                    return term;
+                }
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * copy node with replaced subexpressions
+     *
+     * @param root     node to copy
+     * @param replaced names of temporary variables for subexpressions
+     * @return new node OR the same node if nothing is replaced
+     */
+    private static JetBrainsAstNode replace(JetBrainsAstNode root, Map<JetBrainsAstNode, String> replaced) {
+        return walk(root, node -> replaced.containsKey(node) || node.getType() == PARSE_ERROR ? 0 : node.childCount(),
+                (node, children) -> {
+                    String name = replaced.get(node);
+                    if (name != null)
+                        return new JetBrainsAstNode(SIMPLE_EXPRESSION, new JetBrainsAstNode(IDENTIFIER, name));
+                    boolean changed = false;
+                    for (int i = 0; i < children.size(); ++i)
+                        changed |= children.get(i) != node.getChild(i);
+                    return changed ? new JetBrainsAstNode(node.getType(), node.getText(),
+                            children.toArray(new JetBrainsAstNode[0])) : node;
+                });
+    }
+}
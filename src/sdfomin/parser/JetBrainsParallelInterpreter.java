@@ -0,0 +1,531 @@
+package sdfomin.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Interpreter which executes independent top-level statements of a program at the same time
+ * Every top-level statement gets the variables it reads and writes. Statements which write are split
+ * into groups: two of them are in one group if they read or write a common variable. Groups share no written
+ * variables, so every group runs in program order on its own task with its own variables.
+ * Statements which only read, as printing ones, see the values their variables had at their place in the program:
+ * a group captures them when it passes the statement. They are executed after the groups.
+ * Output of every statement is kept and passed to the sink in program order, then the first error in program order
+ * is thrown, so the result is the same as JetBrainsInterpreter gives. Every run starts without variables.
+ */
+public class JetBrainsParallelInterpreter {
+
+    /**
+     * number of statements collected by one task
+     */
+    private static final int PART = 1 << 10;
+
+    /**
+     * statements collected by one task and their variables
+     */
+    private static final class Part {
+
+        private final int from;
+        private final int to;
+
+        /**
+         * ids of variables in the part
+         */
+        private final Map<String, Integer> variables = new HashMap<>();
+
+        /**
+         * ids of variables used by statements in order
+         */
+        private final JetBrainsIntBuffer used = new JetBrainsIntBuffer();
+
+        private Part(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * statement which doesn't write, with values of its variables captured from groups
+     */
+    private static final class Reader {
+
+        private final int index;
+
+        /**
+         * variables which are written by groups
+         */
+        private final String[] names;
+        private final int[] values;
+        private final boolean[] assigned;
+
+        private Reader(int index, int size) {
+            this.index = index;
+            this.names = new String[size];
+            this.values = new int[size];
+            this.assigned = new boolean[size];
+        }
+    }
+
+    /**
+     * variables of a reader which a group writes
+     */
+    private static final class Capture {
+
+        private final Reader reader;
+
+        /**
+         * indices of variables in the reader
+         */
+        private final JetBrainsIntBuffer variables = new JetBrainsIntBuffer();
+
+        private Capture(Reader reader) {
+            this.reader = reader;
+        }
+    }
+
+    /**
+     * statements which write variables of the group
+     */
+    private static final class Group {
+
+        /**
+         * indices of statements in program order
+         */
+        private final JetBrainsIntBuffer statements = new JetBrainsIntBuffer();
+
+        /**
+         * readers of variables of the group in program order
+         */
+        private final ArrayList<Capture> captures = new ArrayList<>();
+
+        /**
+         * output of all statements
+         */
+        private final JetBrainsIntBuffer output = new JetBrainsIntBuffer();
+
+        /**
+         * size of output after every executed statement
+         */
+        private int[] ends;
+
+        /**
+         * number of executed statements, the last one may fail
+         */
+        private int executed;
+
+        private JetBrainsInterpreter interpreter;
+    }
+
+    /**
+     * main program node
+     */
+    private final JetBrainsAstNode programNode;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * output of a program
+     */
+    private final ArrayList<Integer> output = new ArrayList<>();
+
+    /**
+     * groups of the current run
+     */
+    private volatile List<Group> groups = List.of();
+
+    /**
+     * interpreter of the current run if the program isn't split
+     */
+    private volatile JetBrainsInterpreter sequential;
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * constructor, groups run on the common pool
+     *
+     * @param programNode Program node
+     */
+    public JetBrainsParallelInterpreter(JetBrainsAstNode programNode) {
+        this(programNode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor
+     *
+     * @param programNode Program node
+     * @param pool        pool of groups
+     */
+    public JetBrainsParallelInterpreter(JetBrainsAstNode programNode, ForkJoinPool pool) {
+        if (programNode.getType() != JetBrainsAstNodeType.PROGRAM)
+            throw new IllegalArgumentException("AST-tree is not a PROGRAM!");
+        this.programNode = programNode;
+        this.pool = pool;
+    }
+
+    /**
+     * collect variables which a statement reads and writes, new names get the next ids
+     *
+     * @param statement top-level statement
+     * @param variables ids of variables by names
+     * @param used      receiver of ids of read and assigned variables, ids may repeat
+     * @return true if the statement assigns a variable
+     */
+    static boolean collect(JetBrainsAstNode statement, Map<String, Integer> variables, IntConsumer used) {
+        boolean writes = false;
+        ArrayDeque<JetBrainsAstNode> nodes = new ArrayDeque<>();
+        nodes.push(statement);
+        while (!nodes.isEmpty()) {
+            JetBrainsAstNode node = nodes.pop();
+            if (node.getType() == JetBrainsAstNodeType.IDENTIFIER) {
+                Integer variable = variables.get(node.getText());
+                if (variable == null) {
+                    variable = variables.size();
+                    variables.put(node.getText(), variable);
+                }
+                used.accept(variable);
+            } else if (node.getType() == JetBrainsAstNodeType.ASSIGN_STATEMENT) {
+                // the assigned identifier isn't evaluated, but it's used
+                writes = true;
+                nodes.push(node.getChild(0));
+                nodes.push(node.getChild(1));
+            } else {
+                for (int i = 0; i < node.childCount(); ++i)
+                    nodes.push(node.getChild(i));
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * collect variables of statements of a part with ids of the part
+     *
+     * @param list    StatementList of program
+     * @param part    part
+     * @param starts  receiver of positions of ids of statements in the part
+     * @param writing receiver of flags of statements which assign
+     * @return the part
+     */
+    private static Part collect(JetBrainsAstNode list, Part part, int[] starts, boolean[] writing) {
+        for (int i = part.from; i < part.to; ++i) {
+            starts[i] = part.used.size();
+            writing[i] = collect(list.getChild(i), part.variables, part.used);
+        }
+        return part;
+    }
+
+    /**
+     * @param parents parents of variables, a root is its own parent
+     * @return root of variable
+     */
+    private static int find(int[] parents, int variable) {
+        while (parents[variable] != variable) {
+            parents[variable] = parents[parents[variable]];
+            variable = parents[variable];
+        }
+        return variable;
+    }
+
+    /**
+     * execute a program
+     *
+     * @return output of a program
+     * @throws InterpretException if program has ParseErrors or is cancelled
+     */
+    public ArrayList<Integer> execute() throws InterpretException {
+        execute(output::add);
+        return output;
+    }
+
+    /**
+     * execute a program and pass its output to a sink in program order, output is passed when the groups are over
+     * a program of one group or a pool of one thread is executed by JetBrainsInterpreter
+     *
+     * @param sink receiver of output, it gets values printed before an exception too
+     * @throws InterpretException if program has ParseErrors or is cancelled
+     */
+    public void execute(IntConsumer sink) throws InterpretException {
+        if (pool.getParallelism() < 2) {
+            executeSequentially(sink);
+            return;
+        }
+        long start = JetBrainsMetrics.start();
+        JetBrainsAstNode list = programNode.getChild(0);
+        int count = list.childCount();
+
+        // parts of the program are collected at the same time, then ids of variables of parts are joined
+        int[] starts = new int[count + 1];
+        boolean[] writing = new boolean[count];
+        List<Callable<Part>> collecting = new ArrayList<>();
+        for (int from = 0; from < count; from += PART) {
+            Part part = new Part(from, Math.min(count, from + PART));
+            collecting.add(() -> collect(list, part, starts, writing));
+        }
+        Map<String, Integer> variables = new HashMap<>();
+        JetBrainsIntBuffer used = new JetBrainsIntBuffer();
+        for (Part part : invokeAll(collecting)) {
+            int[] ids = new int[part.variables.size()];
+            for (Map.Entry<String, Integer> entry : part.variables.entrySet())
+                ids[entry.getValue()] = variables.computeIfAbsent(entry.getKey(), name -> variables.size());
+            for (int i = part.from; i < part.to; ++i)
+                starts[i] += used.size();
+            for (int k = 0; k < part.used.size(); ++k)
+                used.accept(ids[part.used.get(k)]);
+        }
+        starts[count] = used.size();
+        String[] names = new String[variables.size()];
+        for (Map.Entry<String, Integer> entry : variables.entrySet())
+            names[entry.getValue()] = entry.getKey();
+
+        // variables of a writing statement are joined, so every group owns its variables
+        int[] parents = new int[names.length];
+        for (int variable = 0; variable < parents.length; ++variable)
+            parents[variable] = variable;
+        for (int i = 0; i < count; ++i) {
+            if (!writing[i] || starts[i] == starts[i + 1])
+                continue;
+            int root = find(parents, used.get(starts[i]));
+            for (int k = starts[i] + 1; k < starts[i + 1]; ++k)
+                parents[find(parents, used.get(k))] = root;
+        }
+
+        List<Group> groups = new ArrayList<>();
+        Group[] byRoot = new Group[names.length];
+        int[] positions = new int[count];
+        Group[] groupOf = new Group[count];
+        for (int i = 0; i < count; ++i) {
+            if (!writing[i])
+                continue;
+            Group group;
+            if (starts[i] == starts[i + 1]) {
+                // an assignment to a broken identifier uses no variables, it's a group of its own
+                group = new Group();
+                groups.add(group);
+            } else {
+                int root = find(parents, used.get(starts[i]));
+                if (byRoot[root] == null) {
+                    byRoot[root] = new Group();
+                    groups.add(byRoot[root]);
+                }
+                group = byRoot[root];
+            }
+            positions[i] = group.statements.size();
+            group.statements.accept(i);
+            groupOf[i] = group;
+        }
+
+        // a reader may be before the statements which write its variables
+        Reader[] readers = new Reader[count];
+        int[] seen = new int[names.length];
+        Arrays.fill(seen, -1);
+        JetBrainsIntBuffer captured = new JetBrainsIntBuffer();
+        for (int i = 0; i < count; ++i) {
+            if (writing[i])
+                continue;
+            // variables which nobody writes stay unassigned
+            captured.clear();
+            for (int k = starts[i]; k < starts[i + 1]; ++k) {
+                int variable = used.get(k);
+                if (seen[variable] != i && byRoot[find(parents, variable)] != null)
+                    captured.accept(variable);
+                seen[variable] = i;
+            }
+            Reader reader = new Reader(i, captured.size());
+            readers[i] = reader;
+            for (int k = 0; k < captured.size(); ++k) {
+                int variable = captured.get(k);
+                reader.names[k] = names[variable];
+                Group group = byRoot[find(parents, variable)];
+                Capture last = group.captures.isEmpty() ? null : group.captures.get(group.captures.size() - 1);
+                if (last == null || last.reader != reader) {
+                    last = new Capture(reader);
+                    group.captures.add(last);
+                }
+                last.variables.accept(k);
+            }
+        }
+
+        // a single group gains nothing from tasks and is faster in one pass
+        if (groups.size() < 2) {
+            executeSequentially(sink);
+            return;
+        }
+        for (Group group : groups) {
+            group.ends = new int[group.statements.size()];
+            group.interpreter = new JetBrainsInterpreter(programNode);
+        }
+        this.groups = groups;
+        if (cancelled)
+            cancel();
+
+        long evaluated = 0;
+        long printed = 0;
+        try {
+            Throwable[] failures = new Throwable[count];
+            AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+            List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+            for (Group group : groups)
+                tasks.add(() -> runGroup(list, group, failures, firstFailure));
+            invokeAll(tasks);
+            for (Group group : groups)
+                evaluated += group.interpreter.getEvaluated();
+
+            for (int i = 0; i < count; ++i) {
+                if (cancelled)
+                    throw new InterpretException("Run is cancelled");
+                if (readers[i] != null) {
+                    JetBrainsInterpreter interpreter = new JetBrainsInterpreter(programNode);
+                    Reader reader = readers[i];
+                    for (int k = 0; k < reader.names.length; ++k)
+                        if (reader.assigned[k])
+                            interpreter.setVariable(reader.names[k], reader.values[k]);
+                    interpreter.begin();
+                    JetBrainsIntBuffer values = new JetBrainsIntBuffer();
+                    try {
+                        interpreter.executeStatement(list.getChild(i), values);
+                    } finally {
+                        evaluated += interpreter.getEvaluated();
+                        printed += values.size();
+                        for (int k = 0; k < values.size(); ++k)
+                            sink.accept(values.get(k));
+                    }
+                    continue;
+                }
+                Group group = groupOf[i];
+                int position = positions[i];
+                // a group stops only after a failure, which is thrown before its next statements
+                if (position >= group.executed)
+                    throw new IllegalStateException("Statement " + i + " wasn't executed");
+                for (int k = position == 0 ? 0 : group.ends[position - 1]; k < group.ends[position]; ++k) {
+                    sink.accept(group.output.get(k));
+                    ++printed;
+                }
+                if (failures[i] instanceof InterpretException)
+                    throw (InterpretException) failures[i];
+                if (failures[i] instanceof RuntimeException)
+                    throw (RuntimeException) failures[i];
+                if (failures[i] != null)
+                    throw (Error) failures[i];
+            }
+        } finally {
+            JetBrainsMetrics.executed(start, evaluated, printed);
+        }
+    }
+
+    private void executeSequentially(IntConsumer sink) throws InterpretException {
+        JetBrainsInterpreter interpreter = new JetBrainsInterpreter(programNode);
+        sequential = interpreter;
+        if (cancelled)
+            interpreter.cancel();
+        interpreter.execute(sink);
+    }
+
+    /**
+     * execute statements of a group, the group stops after a failure or if a statement before it failed
+     *
+     * @param list         StatementList of program
+     * @param group        group
+     * @param failures     failures by statements
+     * @param firstFailure index of the first failed statement
+     * @return nothing
+     */
+    private Void runGroup(JetBrainsAstNode list, Group group, Throwable[] failures, AtomicInteger firstFailure) {
+        JetBrainsInterpreter interpreter = group.interpreter;
+        interpreter.begin();
+        int capture = 0;
+        for (int k = 0; k < group.statements.size(); ++k) {
+            int index = group.statements.get(k);
+            // readers before the statement may be before the first failure
+            capture = capture(group, capture, index);
+            if (index > firstFailure.get())
+                return null;
+            group.executed = k + 1;
+            try {
+                interpreter.executeStatement(list.getChild(index), group.output);
+            } catch (InterpretException | RuntimeException | Error ex) {
+                failures[index] = ex;
+                firstFailure.accumulateAndGet(index, Math::min);
+                group.ends[k] = group.output.size();
+                return null;
+            }
+            group.ends[k] = group.output.size();
+        }
+        capture(group, capture, Integer.MAX_VALUE);
+        return null;
+    }
+
+    /**
+     * capture values of variables of readers before a statement
+     *
+     * @param group   group
+     * @param capture index of the first capture which isn't done
+     * @param index   index of the next statement of group
+     * @return index of the first capture which isn't done
+     */
+    private static int capture(Group group, int capture, int index) {
+        for (; capture < group.captures.size() && group.captures.get(capture).reader.index < index; ++capture) {
+            Capture next = group.captures.get(capture);
+            Reader reader = next.reader;
+            for (int i = 0; i < next.variables.size(); ++i) {
+                int k = next.variables.get(i);
+                Integer value = group.interpreter.getVariable(reader.names[k]);
+                if (value != null) {
+                    reader.values[k] = value;
+                    reader.assigned[k] = true;
+                }
+            }
+        }
+        return capture;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * stop the run from another thread, the run fails with InterpretException soon
+     * a cancelled interpreter can't be run again
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Group group : groups)
+            group.interpreter.cancel();
+        JetBrainsInterpreter sequential = this.sequential;
+        if (sequential != null)
+            sequential.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * execute a program
+     *
+     * @param programNode Program node to execute
+     * @return output of a program
+     * @throws InterpretException if program has ParseErrors
+     */
+    public static ArrayList<Integer> execute(JetBrainsAstNode programNode) throws InterpretException {
+        return new JetBrainsParallelInterpreter(programNode).execute();
+    }
+}
@@ -0,0 +1,248 @@
+package sdfomin.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parser of large texts which parses top-level statements of parts of the text on a fork-join pool
+ * The text is cut into ranges, a part starts after the first ";" of its range which is out of braces.
+ * The depth of braces at the start of every range is found by a parallel count of braces.
+ * A part is parsed from its start until it passes the end of its range. The parts are joined in order:
+ * as in JetBrainsIncrementalParser, the parsing from a statement start doesn't depend on the text before,
+ * so a part is taken from the statement where the previous part ended. If the part has no such statement,
+ * the statements are parsed again one by one until they meet one. The tree is the same as JetBrainsParser gives.
+ */
+public class JetBrainsParallelParser {
+
+    /**
+     * default length of a range
+     */
+    public static final int DEFAULT_RANGE = 1 << 20;
+
+    /**
+     * statements of a part and where they start
+     */
+    private static final class Part {
+
+        private final ArrayList<JetBrainsAstNode> statements = new ArrayList<>();
+        private final JetBrainsIntBuffer starts = new JetBrainsIntBuffer();
+
+        /**
+         * position after the last statement
+         */
+        private int end;
+
+        /**
+         * true if the list is over in the part, at the end of text or at "}"
+         */
+        private boolean over;
+    }
+
+    private final CharSequence source;
+    private final JetBrainsSymbolTable symbols;
+
+    /**
+     * length of a range
+     */
+    private final int range;
+
+    public JetBrainsParallelParser(CharSequence source) {
+        this(source, new JetBrainsSymbolTable(), DEFAULT_RANGE);
+    }
+
+    /**
+     * construct a parser
+     *
+     * @param source  text to parse
+     * @param symbols symbol table, it's shared by parsers of all parts
+     * @param range   length of a range of text parsed by one task
+     */
+    public JetBrainsParallelParser(CharSequence source, JetBrainsSymbolTable symbols, int range) {
+        if (range <= 0)
+            throw new IllegalArgumentException("Length of range should be positive");
+        this.source = source;
+        this.symbols = symbols;
+        this.range = range;
+    }
+
+    public JetBrainsSymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * parse a source text on the common pool
+     *
+     * @return Program node
+     */
+    public JetBrainsAstNode parse() {
+        return parse(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * parse a source text
+     *
+     * @param pool pool of parsing tasks
+     * @return Program node
+     */
+    public JetBrainsAstNode parse(ForkJoinPool pool) {
+        long start = JetBrainsMetrics.start();
+        int ranges = (int) Math.min(Integer.MAX_VALUE, (source.length() + (long) range - 1) / range);
+        JetBrainsAstNode program = ranges <= 1 ? new JetBrainsParser(source, symbols).parseProgram()
+                : parseParts(pool, ranges);
+        JetBrainsMetrics.parsed(start, program);
+        return program;
+    }
+
+    private JetBrainsAstNode parseParts(ForkJoinPool pool, int ranges) {
+        List<Callable<Integer>> counts = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; ++i) {
+            int index = i;
+            counts.add(() -> countBraces(rangeStart(index), rangeStart(index + 1)));
+        }
+        int[] depths = new int[ranges];
+        List<Integer> deltas = invokeAll(pool, counts);
+        for (int i = 1; i < ranges; ++i)
+            depths[i] = depths[i - 1] + deltas.get(i - 1);
+
+        List<Callable<Part>> tasks = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; ++i) {
+            int index = i;
+            tasks.add(() -> parsePart(index, depths[index]));
+        }
+        return join(invokeAll(pool, tasks));
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
+    }
+
+    private int rangeStart(int index) {
+        return (int) Math.min(source.length(), (long) index * range);
+    }
+
+    /**
+     * @return number of "{" minus number of "}" in a range
+     */
+    private int countBraces(int start, int end) {
+        int delta = 0;
+        for (int i = start; i < end; ++i) {
+            char c = source.charAt(i);
+            if (c == '{')
+                ++delta;
+            else if (c == '}')
+                --delta;
+        }
+        return delta;
+    }
+
+    /**
+     * parse statements which start in a range, the first part starts at the start of text,
+     * other parts start after the first ";" out of braces
+     *
+     * @param index index of range
+     * @param depth depth of braces at the start of range
+     * @return part
+     */
+    private Part parsePart(int index, int depth) {
+        Part part = new Part();
+        int pos = rangeStart(index);
+        if (index > 0) {
+            // a part without such ";" is empty, the previous part goes on over its range
+            while (pos < source.length() && (source.charAt(pos) != ';' || depth != 0)) {
+                char c = source.charAt(pos++);
+                if (c == '{')
+                    ++depth;
+                else if (c == '}')
+                    --depth;
+            }
+            if (pos == source.length()) {
+                part.end = pos;
+                return part;
+            }
+            ++pos;
+        }
+
+        int end = rangeStart(index + 1);
+        JetBrainsParser parser = new JetBrainsParser(source, pos, symbols);
+        parser.skip();
+        while (parser.getPos() < end || end == source.length()) {
+            int statementStart = parser.getPos();
+            JetBrainsAstNode statement = parser.nextStatement();
+            if (statement == null) {
+                part.over = true;
+                break;
+            }
+            part.statements.add(statement);
+            part.starts.accept(statementStart);
+        }
+        part.end = parser.getPos();
+        return part;
+    }
+
+    /**
+     * join statements of parts into Program node
+     *
+     * @param parts parsed parts in order of ranges
+     * @return Program node
+     */
+    private JetBrainsAstNode join(List<Part> parts) {
+        JetBrainsAstNode list = new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT_LIST);
+        Part first = parts.get(0);
+        int listStart = first.starts.size() > 0 ? first.starts.get(0) : first.end;
+        int pos = listStart;
+        boolean over = false;
+        for (Part part : parts) {
+            if (over)
+                break;
+            // a part behind the position is covered by statements of the previous parts
+            if (part.end < pos)
+                continue;
+            int[] starts = part.starts.toArray();
+            // the position at the end of part is common too, the part has no statements after it
+            int statement = pos == part.end ? starts.length : Arrays.binarySearch(starts, pos);
+            if (statement < 0) {
+                // the previous part ended inside a statement of this part, parse up to a common start
+                JetBrainsParser parser = new JetBrainsParser(source, pos, symbols);
+                while (statement < 0 && pos < part.end) {
+                    JetBrainsAstNode next = parser.nextStatement();
+                    if (next == null) {
+                        over = true;
+                        break;
+                    }
+                    list.addChild(next);
+                    pos = parser.getPos();
+                    statement = pos == part.end ? starts.length : Arrays.binarySearch(starts, pos);
+                }
+                if (statement < 0)
+                    continue;
+            }
+            for (int i = statement; i < starts.length; ++i)
+                list.addChild(part.statements.get(i));
+            pos = part.end;
+            over = part.over;
+        }
+
+        list.setLength(pos - listStart);
+        if (pos < source.length() && over && source.charAt(pos) == '}')
+            list.addChild(new JetBrainsAstNode(
+                    new JetBrainsParseError(JetBrainsParseError.Code.EXTRA_SYMBOL, pos, 0)));
+        return new JetBrainsAstNode(JetBrainsAstNodeType.PROGRAM, list);
+    }
+}
@@ -0,0 +1,232 @@
+package sdfomin.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed trees by source text, the least recently used trees are evicted first
+ * Texts are found by a 64-bit hash and compared in full only when hashes are equal,
+ * so a repeated text costs one pass over it instead of parsing. The cache is limited by the number of trees
+ * and by their estimated memory. Trees are shared between callers and must not be changed.
+ * Trees parsed by the cache share its symbol table, other trees put into the cache should share it too.
+ * Methods are thread-safe.
+ */
+public class JetBrainsParseCache {
+
+    /**
+     * estimated memory of one node with its list of children in bytes
+     */
+    static final long NODE_BYTES = 96;
+
+    /**
+     * estimated memory of an entry without its tree and text in bytes
+     */
+    static final long ENTRY_BYTES = 128;
+
+    /**
+     * key of a text: the text and its hash
+     */
+    private static final class Key {
+
+        private final String text;
+        private final long hash;
+
+        private Key(String text) {
+            this.text = text;
+            this.hash = hash(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && text.equals(other.text);
+        }
+    }
+
+    private static final class Entry {
+
+        private final JetBrainsAstNode tree;
+        private final long bytes;
+
+        private Entry(JetBrainsAstNode tree, long bytes) {
+            this.tree = tree;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    /**
+     * ids of identifiers of cached trees
+     */
+    private final JetBrainsSymbolTable symbols = new JetBrainsSymbolTable();
+
+    /**
+     * entries in order of use, the least recently used is the first
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * estimated memory of all entries
+     */
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * construct a cache
+     *
+     * @param maxEntries the largest number of trees
+     * @param maxBytes   the largest estimated memory of trees and texts in bytes
+     */
+    public JetBrainsParseCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0)
+            throw new IllegalArgumentException("Limits of cache should be positive");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a text
+     *
+     * @param text text
+     * @return hash
+     */
+    static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); ++i) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * estimate memory of a text and its tree
+     *
+     * @param text source text
+     * @param tree Program node
+     * @return bytes
+     */
+    static long estimate(String text, JetBrainsAstNode tree) {
+        return ENTRY_BYTES + 2L * text.length() + NODE_BYTES * (tree.getNodeCount() + 1);
+    }
+
+    /**
+     * get the tree of a text, the text is parsed if it isn't cached
+     *
+     * @param text source text
+     * @return Program node
+     */
+    public JetBrainsAstNode parse(String text) {
+        Key key = new Key(text);
+        JetBrainsAstNode tree = get(key);
+        if (tree != null)
+            return tree;
+        tree = new JetBrainsParser(text, symbols).parse();
+        put(key, tree);
+        return tree;
+    }
+
+    /**
+     * get the tree of a text if it's cached
+     *
+     * @param text source text
+     * @return Program node or null
+     */
+    public JetBrainsAstNode get(String text) {
+        return get(new Key(text));
+    }
+
+    /**
+     * add the tree of a text, for trees parsed in other ways, for example by JetBrainsIncrementalParser
+     *
+     * @param text source text
+     * @param tree Program node of the text
+     */
+    public void put(String text, JetBrainsAstNode tree) {
+        put(new Key(text), tree);
+    }
+
+    private synchronized JetBrainsAstNode get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.tree;
+    }
+
+    private synchronized void put(Key key, JetBrainsAstNode tree) {
+        Entry entry = new Entry(tree, estimate(key.text, tree));
+        // a tree larger than the cache would evict everything and be evicted itself
+        if (entry.bytes > maxBytes)
+            return;
+        Entry old = entries.put(key, entry);
+        if (old != null)
+            bytes -= old.bytes;
+        bytes += entry.bytes;
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            ++evictions;
+        }
+    }
+
+    public JetBrainsSymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * remove all trees, statistics are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated memory of cached trees and texts in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return share of lookups which found a tree, 0 if there were no lookups
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,139 @@
+package sdfomin.parser;
+
+import java.util.Objects;
+
+/**
+ * Error found by JetBrainsParser: a code, a position and a set of expected tokens
+ * Errors are recorded without exceptions, the message is built only when it's read,
+ * since while a text is typed almost every parse finds errors and most messages are never shown.
+ */
+public final class JetBrainsParseError {
+
+    public enum Code {
+        /**
+         * a token of the expected set was expected
+         */
+        EXPECTED,
+        /**
+         * symbols are left after the program
+         */
+        EXTRA_SYMBOL,
+        /**
+         * "if" has no condition
+         */
+        EMPTY_IF,
+        /**
+         * a reserved token is in place of an operand
+         */
+        NOT_PROPER_SYMBOL,
+        /**
+         * an identifier was expected
+         */
+        IDENTIFIER_EXPECTED,
+        /**
+         * a number or an identifier was expected
+         */
+        NUMBER_EXPECTED
+    }
+
+    private final Code code;
+
+    /**
+     * position of the token where the error is found
+     */
+    private final int offset;
+
+    /**
+     * bit set of expected kinds of tokens from JetBrainsLexer, 0 if code isn't EXPECTED
+     */
+    private final int expected;
+
+    /**
+     * built message, it's the same for every thread, so it isn't synchronized
+     */
+    private String message;
+
+    JetBrainsParseError(Code code, int offset, int expected) {
+        this.code = code;
+        this.offset = offset;
+        this.expected = expected;
+    }
+
+    /**
+     * @param kind   kind of expected token
+     * @param offset position of the error
+     * @return error of code EXPECTED
+     */
+    static JetBrainsParseError expected(int kind, int offset) {
+        return new JetBrainsParseError(Code.EXPECTED, offset, 1 << kind);
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return bit set of expected kinds of tokens, a kind k is expected if bit 1 << k is set
+     */
+    public int getExpected() {
+        return expected;
+    }
+
+    /**
+     * build the message of error on the first call
+     *
+     * @return message with the position
+     */
+    public String getMessage() {
+        if (message == null)
+            message = buildMessage();
+        return message;
+    }
+
+    private String buildMessage() {
+        switch (code) {
+            case EXPECTED:
+                StringBuilder texts = new StringBuilder();
+                for (int kind = 0; kind < Integer.SIZE; ++kind) {
+                    if ((expected & 1 << kind) == 0)
+                        continue;
+                    if (texts.length() > 0)
+                        texts.append(", ");
+                    texts.append('"').append(JetBrainsLexer.getText(kind)).append('"');
+                }
+                return "One of the strings were expected: " + texts + " in position " + offset;
+            case EXTRA_SYMBOL:
+                return "Extra symbol on pos " + offset;
+            case EMPTY_IF:
+                return "Empty \"if\" expression in position " + offset;
+            case NOT_PROPER_SYMBOL:
+                return "Not proper symbol in position " + offset;
+            case IDENTIFIER_EXPECTED:
+                return "Identifier expected in position " + offset;
+            default:
+                return "Number or identifier expected on pos " + offset;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof JetBrainsParseError))
+            return false;
+        JetBrainsParseError other = (JetBrainsParseError) o;
+        return code == other.code && offset == other.offset && expected == other.expected;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(code, offset, expected);
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -1,118 +1,138 @@
 package sdfomin.parser;
 
-import java.text.ParseException;
-import java.util.function.Supplier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 
 import static sdfomin.parser.JetBrainsAstNodeType.*;
+import static sdfomin.parser.JetBrainsLexer.*;
 
 public class JetBrainsParser {
 
     /**
-     * symbols between operands
+     * kinds of tokens which can't be a part of identifier or integer
      */
-    public final String DEFAULT_WHITESPACES = " \n\r\t";
+    private static final int RESERVED = 1 << IF | 1 << LEFT_PARENTHESIS | 1 << RIGHT_PARENTHESIS |
+            1 << LEFT_BRACE | 1 << RIGHT_BRACE | 1 << LESS | 1 << GREATER | 1 << MULTIPLY | 1 << DIVIDE;
+
+    /**
+     * kinds of tokens which start or close a statement, error recovery stops before them
+     */
+    private static final int SYNCHRONIZING = 1 << EOF | 1 << RIGHT_BRACE | 1 << IF | 1 << AT;
 
     /**
      * text to parse
      */
-    private final String source;
+    private final CharSequence source;
+
+    /**
+     * tokens of text
+     */
+    private final JetBrainsLexer lexer;
 
     /**
-     * current position of caret
+     * ids of identifiers
      */
-    private int pos = 0;
+    private final JetBrainsSymbolTable symbols;
 
+    /**
+     * index of current token
+     */
+    private int index = 0;
+
+    /**
+     * @return position of current token
+     */
     public int getPos() {
-        return pos;
+        return lexer.start(index);
     }
 
-    public char getCurrent() {
-        return pos >= source.length() ? 0 : source.charAt(pos);
+    /**
+     * @return kind of current token
+     */
+    public int getCurrent() {
+        return lexer.kind(index);
     }
 
     public boolean isNext() {
-        return getCurrent() != 0;
+        return getCurrent() != EOF;
     }
 
     public void next() {
         if (isNext())
-            pos++;
+            index++;
     }
 
     /**
-     * move caret to next non-whitespace symbol
+     * move caret to next non-whitespace token
      */
     public void skip() {
-        while (DEFAULT_WHITESPACES.contains(String.valueOf(getCurrent())))
-            next();
+        if (getCurrent() == WHITESPACE)
+            index++;
     }
 
     /**
-     * match string from caret to args
+     * is current token matching to kind
      *
-     * @param args strings to match
-     * @return arg which found or null if nothing was found
+     * @param kind kind of token
+     * @return true if matched, otherwise false
      */
-    private String matchNoExcept(String... args) {
-        int pos = getPos();
-        for (String s : args) {
-            boolean match = true;
-            for (int j = 0; j < s.length(); ++j) {
-                if (getCurrent() == s.charAt(j))
-                    next();
-                else {
-                    this.pos = pos;
-                    match = false;
-                    break;
-                }
-            }
-            if (match) {
-                skip();
-                return s;
-            }
-        }
+    public boolean isMatch(int kind) {
+        return getCurrent() == kind;
+    }
+
+    /**
+     * try to match current token and move to the next non-whitespace token
+     *
+     * @param kind kind of token
+     * @return null if matched, otherwise the error
+     */
+    public JetBrainsParseError match(int kind) {
+        if (getCurrent() != kind)
+            return JetBrainsParseError.expected(kind, getPos());
+        next();
+        skip();
         return null;
     }
 
     /**
-     * is string matching to args
+     * create a node of error at the current token, the message isn't built
      *
-     * @param terms string try to match
-     * @return true if matched, otherwise false
+     * @param code code of error
+     * @return PARSE_ERROR node
      */
-    public boolean isMatch(String... terms) {
-        int pos = getPos();
-        String result = matchNoExcept(terms);
-        this.pos = pos;
-        return result != null;
+    private JetBrainsAstNode error(JetBrainsParseError.Code code) {
+        return new JetBrainsAstNode(new JetBrainsParseError(code, getPos(), 0));
+    }
+
+    public JetBrainsParser(CharSequence source) {
+        this(source, new JetBrainsSymbolTable());
     }
 
     /**
-     * try to match string with one of the terms
+     * construct a parser which adds identifiers to a shared symbol table
      *
-     * @param terms strings try to match with
-     * @return term that was found
-     * @throws ParseException if nothing was found
+     * @param source  text to parse
+     * @param symbols symbol table, for example of other programs of the same editor
      */
-    public String match(String... terms) throws ParseException {
-        int pos = getPos();
-        String result = matchNoExcept(terms);
-        if (result == null) {
-            StringBuilder message = new StringBuilder("One of the strings were expected: ");
-            boolean first = true;
-            for (String term : terms) {
-                if (!first)
-                    message.append(", ");
-                message.append(String.format("\"%s\"", term));
-                first = false;
-            }
-            throw new ParseException(message.toString(), pos);
-        }
-        return result;
+    public JetBrainsParser(CharSequence source, JetBrainsSymbolTable symbols) {
+        this(source, 0, symbols);
     }
 
-    public JetBrainsParser(String source) {
+    /**
+     * construct a parser that starts from the middle of the source
+     *
+     * @param source  text to parse
+     * @param pos     position of the first statement to parse
+     * @param symbols symbol table
+     */
+    JetBrainsParser(CharSequence source, int pos, JetBrainsSymbolTable symbols) {
         this.source = source;
+        this.lexer = new JetBrainsLexer(source, pos);
+        this.symbols = symbols;
+    }
+
+    public JetBrainsSymbolTable getSymbols() {
+        return symbols;
     }
 
     /**
@@ -121,11 +141,10 @@ public class JetBrainsParser {
      * @return created node PROGRAM
      */
     private JetBrainsAstNode program() {
-        JetBrainsAstNode res = new JetBrainsAstNode(JetBrainsAstNodeType.PROGRAM, statementList());
+        JetBrainsAstNode list = statementList();
         if (isNext())
-            res.getChild(0).addChild(new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    "Extra symbol on pos " + getPos()));
-        return res;
+            list.addChild(error(JetBrainsParseError.Code.EXTRA_SYMBOL));
+        return new JetBrainsAstNode(JetBrainsAstNodeType.PROGRAM, list);
     }
 
     /**
@@ -135,149 +154,253 @@ public class JetBrainsParser {
      */
     private JetBrainsAstNode statementList() {
         JetBrainsAstNode statementNode = new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT_LIST);
-        while (isNext() && !isMatch("}")) {
-            int pos = this.getPos();
-            statementNode.addChild(statement());
-            if (this.getPos() == pos) {
-                next();
-                skip();
-            }
-        }
+        int pos = this.getPos();
+        JetBrainsAstNode statement;
+        while ((statement = nextStatement()) != null)
+            statementNode.addChild(statement);
+        statementNode.setLength(this.getPos() - pos);
         return statementNode;
     }
 
     /**
-     * Statement → ExpressionStatement | IfStatement | AssignStatement | BlockStatement
+     * parse one element of StatementList
+     * if statement can't be parsed, symbols up to the next statement become a part of the statement
      *
-     * @return one of four statements OR ParseError if can't parse
+     * @return Statement node OR null if the list is over
      */
-    private JetBrainsAstNode statement() {
-        JetBrainsAstNode res = null;
-        try {
-
-            if (isMatch("if")) { // IfStatement
-                JetBrainsAstNode expression;
-                match("if");
-                match("(");
-                if (isMatch(")"))
-                    expression = new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                            "Empty \"if\" expression in position " + getPos());
-                else
-                    expression = expression();
-                match(")");
-                JetBrainsAstNode statement = statement();
-                res = new JetBrainsAstNode(JetBrainsAstNodeType.IF_STATEMENT, expression, statement);
-            } else if (isMatch("@")) { // AssignStatement
-                match("@");
-                JetBrainsAstNode identifier = identifier();
-                match("=");
-                JetBrainsAstNode expression = expression();
-                match(";");
-                res = new JetBrainsAstNode(JetBrainsAstNodeType.ASSIGN_STATEMENT, identifier, expression);
-            } else if (isMatch("{")) { // BlockStatement
-                match("{");
-                res = new JetBrainsAstNode(JetBrainsAstNodeType.BLOCK_STATEMENT, statementList());
-                match("}");
-            } else { // ExpressionStatement
-                res = new JetBrainsAstNode(JetBrainsAstNodeType.EXPRESSION_STATEMENT, expression());
-                match(";");
-            }
-        } catch (ParseException ex) {
-            return new JetBrainsAstNode(STATEMENT, new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    ex.getMessage() + " in position " + ex.getErrorOffset(), res));
-        }
-        return new JetBrainsAstNode(STATEMENT, res);
+    JetBrainsAstNode nextStatement() {
+        if (!isNext() || isMatch(RIGHT_BRACE))
+            return null;
+        return skipIfStuck(statement());
     }
 
     /**
-     * Expression → ConditionExpression
+     * skip symbols if statement covers nothing, so the list goes forward (panic mode)
+     * symbols are skipped up to "}", "if", "@" or the end of text, or up to ";" including it,
+     * so a broken region becomes one statement with one error however long it is
      *
-     * @return ConditionExpression node
+     * @param statement parsed Statement node
+     * @return the same statement
      */
-    private JetBrainsAstNode expression() {
-        JetBrainsAstNode conditionExpression = conditionExpression();
-        return new JetBrainsAstNode(JetBrainsAstNodeType.EXPRESSION, conditionExpression);
+    private JetBrainsAstNode skipIfStuck(JetBrainsAstNode statement) {
+        if (statement.getLength() == 0) {
+            int pos = this.getPos();
+            int kind;
+            do {
+                kind = getCurrent();
+                next();
+                skip();
+            } while (kind != SEMICOLON && (SYNCHRONIZING & 1 << getCurrent()) == 0);
+            statement.setLength(this.getPos() - pos);
+        }
+        return statement;
+    }
+
+    /**
+     * unfinished IfStatement or BlockStatement, or StatementList of BlockStatement
+     */
+    private static final class Frame {
+
+        /**
+         * IF_STATEMENT, BLOCK_STATEMENT or STATEMENT_LIST
+         */
+        private final JetBrainsAstNodeType type;
+
+        /**
+         * position where the statement or the list starts
+         */
+        private final int pos;
+
+        /**
+         * condition of IfStatement OR StatementList being filled
+         */
+        private final JetBrainsAstNode node;
+
+        private Frame(JetBrainsAstNodeType type, int pos, JetBrainsAstNode node) {
+            this.type = type;
+            this.pos = pos;
+            this.node = node;
+        }
     }
 
     /**
-     * Find all expressions with type nodeType in current expression
-     * with parsing nextExpression inside
+     * Statement → ExpressionStatement | IfStatement | AssignStatement | BlockStatement
+     * nested statements are kept on an explicit stack, so nesting is limited only by memory
      *
-     * @param nextExpression type of operands
-     * @param nodeType       type of current expression
-     * @param terms          operators of current expression
-     * @return nodeType parsed expression OR ParseError if can't parse
+     * @return one of four statements OR ParseError if can't parse
      */
-    private JetBrainsAstNode countExpression(Supplier<JetBrainsAstNode> nextExpression,
-                                             JetBrainsAstNodeType nodeType,
-                                             String... terms) {
-        JetBrainsAstNode result = nextExpression.get();
-        while (isMatch(terms)) {
-            String operation;
-            try {
-                operation = match(terms);
-            } catch (ParseException e) {
-                return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                        e.getMessage() + " in position " + e.getErrorOffset());
+    private JetBrainsAstNode statement() {
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        while (true) {
+            Frame top = frames.peek();
+            JetBrainsAstNode statement;
+            if (top != null && top.type == STATEMENT_LIST && (!isNext() || isMatch(RIGHT_BRACE))) {
+                // StatementList of BlockStatement is over
+                frames.pop();
+                top.node.setLength(this.getPos() - top.pos);
+                Frame block = frames.pop();
+                JetBrainsAstNode res = new JetBrainsAstNode(JetBrainsAstNodeType.BLOCK_STATEMENT, top.node);
+                JetBrainsParseError error = match(RIGHT_BRACE);
+                if (error != null)
+                    res = new JetBrainsAstNode(error, res);
+                statement = statementNode(res, block.pos);
+            } else {
+                int pos = this.getPos();
+                JetBrainsAstNode res = null;
+                JetBrainsParseError error;
+                // the first failed match ends the statement, nodes of unfinished statements are dropped
+                if (isMatch(IF)) { // IfStatement, its statement is parsed on the next iteration
+                    match(IF);
+                    error = match(LEFT_PARENTHESIS);
+                    if (error == null) {
+                        JetBrainsAstNode expression = isMatch(RIGHT_PARENTHESIS)
+                                ? error(JetBrainsParseError.Code.EMPTY_IF) : expression();
+                        error = match(RIGHT_PARENTHESIS);
+                        if (error == null) {
+                            frames.push(new Frame(IF_STATEMENT, pos, expression));
+                            continue;
+                        }
+                    }
+                } else if (isMatch(AT)) { // AssignStatement
+                    match(AT);
+                    JetBrainsAstNode identifier = identifier();
+                    error = match(ASSIGN);
+                    if (error == null) {
+                        JetBrainsAstNode expression = expression();
+                        error = match(SEMICOLON);
+                        if (error == null)
+                            res = new JetBrainsAstNode(JetBrainsAstNodeType.ASSIGN_STATEMENT, identifier, expression);
+                    }
+                } else if (isMatch(LEFT_BRACE)) { // BlockStatement, its statements are parsed next
+                    match(LEFT_BRACE);
+                    frames.push(new Frame(BLOCK_STATEMENT, pos, null));
+                    frames.push(new Frame(STATEMENT_LIST, this.getPos(),
+                            new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT_LIST)));
+                    continue;
+                } else { // ExpressionStatement
+                    res = new JetBrainsAstNode(JetBrainsAstNodeType.EXPRESSION_STATEMENT, expression());
+                    error = match(SEMICOLON);
+                }
+                if (error != null)
+                    res = new JetBrainsAstNode(error, res);
+                statement = statementNode(res, pos);
+            }
+
+            // pass finished statement to unfinished ones
+            while (!frames.isEmpty() && frames.peek().type == IF_STATEMENT) {
+                Frame ifFrame = frames.pop();
+                statement = statementNode(
+                        new JetBrainsAstNode(JetBrainsAstNodeType.IF_STATEMENT, ifFrame.node, statement), ifFrame.pos);
             }
-            JetBrainsAstNode expression = nextExpression.get();
-            result = new JetBrainsAstNode(nodeType, operation, result, expression);
+            if (frames.isEmpty())
+                return statement;
+            frames.peek().node.addChild(skipIfStuck(statement));
         }
-        return result;
     }
 
     /**
-     * ConditionExpression -> PlusMinusExpression | PlusMinusExpression < PlusMinusExpression
-     * | PlusMinusExpression > PlusMinusExpression
+     * wrap a statement into Statement node
      *
-     * @return ConditionExpression node OR ParseError if can't parse
+     * @param res statement
+     * @param pos position where the statement starts
+     * @return Statement node
      */
-    private JetBrainsAstNode conditionExpression() {
-        return countExpression(this::plusMinusExpression, CONDITION_EXPRESSION, "<", ">");
+    private JetBrainsAstNode statementNode(JetBrainsAstNode res, int pos) {
+        JetBrainsAstNode statement = new JetBrainsAstNode(STATEMENT, res);
+        statement.setLength(this.getPos() - pos);
+        return statement;
     }
 
     /**
-     * PlusMinusExpression → MultiplyDivisionExpression | PlusMinusExpression + MultiplyDivisionExpression
-     * | PlusMinusExpression - MultiplyDivisionExpression
+     * precedence of operator
      *
-     * @return PlusMinusExpression node OR ParseError if can't parse
+     * @param kind kind of token
+     * @return 3 for * and /, 2 for + and -, 1 for < and >, 0 if token isn't an operator
      */
-    private JetBrainsAstNode plusMinusExpression() {
-        return countExpression(this::multiplyDivisionExpression, PLUS_MINUS_EXPRESSION, "+", "-");
+    private static int precedence(int kind) {
+        switch (kind) {
+            case MULTIPLY:
+            case DIVIDE:
+                return 3;
+            case PLUS:
+            case MINUS:
+                return 2;
+            case LESS:
+            case GREATER:
+                return 1;
+            default:
+                return 0;
+        }
     }
 
     /**
+     * Expression → ConditionExpression
+     * ConditionExpression → PlusMinusExpression | ConditionExpression < PlusMinusExpression
+     * | ConditionExpression > PlusMinusExpression
+     * PlusMinusExpression → MultiplyDivisionExpression | PlusMinusExpression + MultiplyDivisionExpression
+     * | PlusMinusExpression - MultiplyDivisionExpression
      * MultiplyDivisionExpression → SimpleExpression | MultiplyDivisionExpression * SimpleExpression
      * | MultiplyDivisionExpression / SimpleExpression
+     * SimpleExpression → Identifier | Integer | ( Expression )
+     * operators are folded by precedence on explicit stacks, opened parentheses are kept on the operator stack
      *
-     * @return MultiplyDivisionExpression node OR ParseError if can't parse
+     * @return Expression node, ParseErrors of operands are kept inside
      */
-    private JetBrainsAstNode multiplyDivisionExpression() {
-        return countExpression(this::simpleExpression, MULTIPLY_DIVISION_EXPRESSION, "*", "/");
+    private JetBrainsAstNode expression() {
+        ArrayList<JetBrainsAstNode> operands = new ArrayList<>();
+        JetBrainsIntBuffer operators = new JetBrainsIntBuffer();
+        int depth = 0;
+        while (true) {
+            while (isMatch(LEFT_PARENTHESIS)) {
+                next();
+                skip();
+                operators.accept(LEFT_PARENTHESIS);
+                ++depth;
+            }
+            JetBrainsAstNode operand = isMatch(JetBrainsLexer.IDENTIFIER) || isMatch(IF) ? identifier() : integer();
+            operands.add(new JetBrainsAstNode(JetBrainsAstNodeType.SIMPLE_EXPRESSION, operand));
+
+            while (precedence(getCurrent()) == 0) {
+                // Expression is over
+                fold(operands, operators, 1);
+                JetBrainsAstNode expression = new JetBrainsAstNode(JetBrainsAstNodeType.EXPRESSION,
+                        operands.remove(operands.size() - 1));
+                if (depth == 0)
+                    return expression;
+                operators.pop();
+                --depth;
+                if (isMatch(RIGHT_PARENTHESIS)) {
+                    next();
+                    skip();
+                    operands.add(new JetBrainsAstNode(JetBrainsAstNodeType.SIMPLE_EXPRESSION, expression));
+                } else {
+                    operands.add(new JetBrainsAstNode(JetBrainsParseError.expected(RIGHT_PARENTHESIS, getPos())));
+                }
+            }
+            int operator = getCurrent();
+            fold(operands, operators, precedence(operator));
+            operators.accept(operator);
+            next();
+            skip();
+        }
     }
 
     /**
-     * SimpleExpression → Identifier | Integer | ( Expression )
+     * fold operators of the current parentheses which have at least given precedence, operators are left-associative
      *
-     * @return one of three node types OR ParseError if can't parse
+     * @param operands   stack of operands
+     * @param operators  stack of operators and opened parentheses
+     * @param precedence minimal precedence to fold
      */
-    private JetBrainsAstNode simpleExpression() {
-        JetBrainsAstNode res;
-        if (isMatch("(")) { // Expression
-            try {
-                match("(");
-                res = expression();
-                match(")");
-            } catch (ParseException ex) {
-                return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                        ex.getMessage() + " in position " + ex.getErrorOffset());
-            }
-        } else if (Character.isLetter(getCurrent())) { // Identifier
-            res = identifier();
-        } else { // Integer
-            res = integer();
+    private static void fold(ArrayList<JetBrainsAstNode> operands, JetBrainsIntBuffer operators, int precedence) {
+        while (operators.size() > 0 && precedence(operators.peek()) >= precedence) {
+            int operator = operators.pop();
+            JetBrainsAstNode right = operands.remove(operands.size() - 1);
+            JetBrainsAstNode left = operands.remove(operands.size() - 1);
+            JetBrainsAstNodeType type = operator == LESS || operator == GREATER ? CONDITION_EXPRESSION
+                    : operator == PLUS || operator == MINUS ? PLUS_MINUS_EXPRESSION : MULTIPLY_DIVISION_EXPRESSION;
+            operands.add(new JetBrainsAstNode(type, JetBrainsLexer.getText(operator), left, right));
         }
-        return new JetBrainsAstNode(JetBrainsAstNodeType.SIMPLE_EXPRESSION, res);
     }
 
     /**
@@ -286,7 +409,7 @@ public class JetBrainsParser {
      * @return true if reserved
      */
     private boolean isReserved() {
-        return isMatch("if", "(", ")", "{", "}", "<", ">", "*", "/");
+        return (RESERVED & 1 << getCurrent()) != 0;
     }
 
     /**
@@ -296,23 +419,15 @@ public class JetBrainsParser {
      */
     private JetBrainsAstNode identifier() {
         if (isReserved())
-            return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    "Not proper symbol in position " + getPos());
-        StringBuilder identifier = new StringBuilder();
-        if (Character.isLetter(getCurrent())) {
-            identifier.append(getCurrent());
-            next();
-            while (Character.isLetterOrDigit(getCurrent())) {
-                identifier.append(getCurrent());
-                next();
-            }
-        } else {
-            return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    "Identifier expected in position " + getPos());
-        }
+            return error(JetBrainsParseError.Code.NOT_PROPER_SYMBOL);
+        if (!isMatch(JetBrainsLexer.IDENTIFIER))
+            return error(JetBrainsParseError.Code.IDENTIFIER_EXPECTED);
+        // a known name doesn't allocate anything
+        int symbol = symbols.id(source, getPos(), lexer.end(index));
+        next();
         skip();
 
-        return new JetBrainsAstNode(JetBrainsAstNodeType.IDENTIFIER, identifier.toString());
+        return new JetBrainsAstNode(symbols.name(symbol), symbol);
     }
 
     /**
@@ -322,24 +437,22 @@ public class JetBrainsParser {
      */
     private JetBrainsAstNode integer() {
         if (isReserved())
-            return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    "Not proper symbol in position " + getPos());
-        StringBuilder number = new StringBuilder();
-        boolean ok = false;
-        while (Character.isDigit(getCurrent()) || (getCurrent() == '-' && !ok) || (getCurrent() == '+' && !ok)) {
-            if (getCurrent() != '+') number.append(getCurrent());
-            if (getCurrent() != '-' && getCurrent() != '+') ok = true;
+            return error(JetBrainsParseError.Code.NOT_PROPER_SYMBOL);
+        // signs are adjacent to each other and to the digits, pairs of minuses cancel out
+        boolean negative = false;
+        while (isMatch(PLUS) || isMatch(MINUS)) {
+            if (isMatch(MINUS))
+                negative = !negative;
             next();
         }
 
-        if (number.length() == 0 || !ok)
+        if (!isMatch(JetBrainsLexer.INTEGER))
             // we always can replace number to identifier
-            return new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR,
-                    "Number or identifier expected on pos " + getPos());
-        while (number.charAt(0) == '-' && number.charAt(1) == '-')
-            number.delete(0, 2);
+            return error(JetBrainsParseError.Code.NUMBER_EXPECTED);
+        String digits = source.subSequence(getPos(), lexer.end(index)).toString();
+        next();
         skip();
-        return new JetBrainsAstNode(JetBrainsAstNodeType.INTEGER, number.toString());
+        return new JetBrainsAstNode(JetBrainsAstNodeType.INTEGER, negative ? "-" + digits : digits);
     }
 
     /**
@@ -348,6 +461,18 @@ public class JetBrainsParser {
      * @return Program node
      */
     public JetBrainsAstNode parse() {
+        long start = JetBrainsMetrics.start();
+        JetBrainsAstNode program = parseProgram();
+        JetBrainsMetrics.parsed(start, program);
+        return program;
+    }
+
+    /**
+     * parse a source text without metrics, for parsers which record their own
+     *
+     * @return Program node
+     */
+    JetBrainsAstNode parseProgram() {
         skip();
         return program();
     }
@@ -37,56 +37,29 @@ public class JetBrainsParserLibrary {
 
     /**
      * checks if number of IF_STATEMENT with brackets has increased
+     * counters are kept by nodes, so it doesn't traverse the trees
      *
      * @param first  first node
      * @param second second node
      * @return true if number has increased, false otherwise
      */
     public static boolean isBlockStatementUpdated(JetBrainsAstNode first, JetBrainsAstNode second) {
-        Function<JetBrainsAstNode, Boolean> isComplexIf = (node ->
-                node.getType() == JetBrainsAstNodeType.IF_STATEMENT &&
-                        // node is BLOCK_STATEMENT and it's STATEMENT_LIST contains elements
-                        node.getChild(1).getChild(0).getType() == JetBrainsAstNodeType.BLOCK_STATEMENT &&
-                        node.getChild(1).getChild(0).getChild(0).getChildren().size() > 0);
-
-        Function<JetBrainsAstNode, Boolean> isIf = (node ->
-                node.getType() == JetBrainsAstNodeType.IF_STATEMENT);
-
-        return (countDeepNodes(first, isComplexIf) < countDeepNodes(second, isComplexIf)) &&
-                (countDeepNodes(first, isIf) < countDeepNodes(second, isIf));
+        long start = JetBrainsMetrics.start();
+        boolean res = first.getComplexIfCount() < second.getComplexIfCount() &&
+                first.getIfCount() < second.getIfCount();
+        JetBrainsMetrics.checked(start);
+        return res;
     }
 
     /**
      * counts statements to understand if we should update the tree
+     * IF_STATEMENT is counted only if it contains BLOCK_STATEMENT, the counter is kept by nodes
      *
      * @param node root node
      * @return number of statements with some corrections
      */
     public static int countIsTreeUpdated(JetBrainsAstNode node) {
-        int res = 0;
-        for (var x : node.getChildren()) {
-
-            if (x.getType() != JetBrainsAstNodeType.STATEMENT ||
-                    x.getChild(0).getType() == JetBrainsAstNodeType.PARSE_ERROR) {
-                res += countIsTreeUpdated(x);
-                continue;
-            }
-
-            JetBrainsAstNode statementNode = x.getChild(0);
-            if (statementNode.getType() != JetBrainsAstNodeType.IF_STATEMENT) {
-                res += countIsTreeUpdated(statementNode) + 1;
-                continue;
-            }
-
-            JetBrainsAstNode ifStatementNode = statementNode.getChild(1).getChild(0);
-            if (ifStatementNode.getType() == JetBrainsAstNodeType.IF_STATEMENT ||
-                    ifStatementNode.getType() == JetBrainsAstNodeType.PARSE_ERROR)
-                res += countIsTreeUpdated(ifStatementNode);
-            else
-                res += countIsTreeUpdated(ifStatementNode) + 1;
-
-        }
-        return res;
+        return node.getStatementCount();
     }
 
     /**
@@ -99,7 +72,10 @@ public class JetBrainsParserLibrary {
      * @return true if we should update
      */
     public static boolean isTreeUpdated(JetBrainsAstNode first, JetBrainsAstNode second) {
-        return countIsTreeUpdated(first) != countIsTreeUpdated(second);
+        long start = JetBrainsMetrics.start();
+        boolean res = countIsTreeUpdated(first) != countIsTreeUpdated(second);
+        JetBrainsMetrics.checked(start);
+        return res;
     }
 
     /**
@@ -0,0 +1,55 @@
+package sdfomin.parser;
+
+/**
+ * Node of a program after JetBrainsResolver
+ * Wrapper nodes are removed, integers are decoded and identifiers are replaced with slots
+ */
+public class JetBrainsResolvedNode {
+
+    /**
+     * type of node, one of statements, operations, INTEGER, IDENTIFIER or PARSE_ERROR
+     */
+    private final JetBrainsAstNodeType type;
+
+    /**
+     * value of INTEGER, slot of IDENTIFIER and ASSIGN_STATEMENT or operator symbol of operations
+     */
+    private final int value;
+
+    /**
+     * message of PARSE_ERROR or text of INTEGER which can't be decoded
+     */
+    private final String text;
+
+    /**
+     * children of node
+     */
+    private final JetBrainsResolvedNode[] children;
+
+    JetBrainsResolvedNode(JetBrainsAstNodeType type, int value, String text, JetBrainsResolvedNode... children) {
+        this.type = type;
+        this.value = value;
+        this.text = text;
+        this.children = children;
+    }
+
+    public JetBrainsAstNodeType getType() {
+        return type;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public JetBrainsResolvedNode getChild(int index) {
+        return children[index];
+    }
+
+    public int childCount() {
+        return children.length;
+    }
+}
@@ -0,0 +1,59 @@
+package sdfomin.parser;
+
+import java.util.List;
+
+/**
+ * Program linked by JetBrainsResolver, it can be executed many times
+ */
+public class JetBrainsResolvedProgram {
+
+    /**
+     * statements of program
+     */
+    private final JetBrainsResolvedNode root;
+
+    /**
+     * names of variables by slots
+     */
+    private final String[] names;
+
+    /**
+     * identifiers which are read but never assigned
+     */
+    private final List<String> undeclared;
+
+    JetBrainsResolvedProgram(JetBrainsResolvedNode root, String[] names, List<String> undeclared) {
+        this.root = root;
+        this.names = names;
+        this.undeclared = undeclared;
+    }
+
+    /**
+     * @return STATEMENT_LIST node of program
+     */
+    public JetBrainsResolvedNode getRoot() {
+        return root;
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int slotCount() {
+        return names.length;
+    }
+
+    /**
+     * @param slot slot of variable
+     * @return name of variable
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @return identifiers which are read but never assigned in program
+     */
+    public List<String> getUndeclared() {
+        return undeclared;
+    }
+}
@@ -0,0 +1,185 @@
+package sdfomin.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Links a program once before executions
+ * Integers are decoded to int, every identifier gets a slot in a dense frame of variables.
+ * Identifiers which are never assigned are only listed, a run fails when one of them is read, like for AST-tree.
+ */
+public class JetBrainsResolver {
+
+    /**
+     * slots of variables
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * names of variables by slots
+     */
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * slots which are assigned somewhere in program
+     */
+    private final BitSet assigned = new BitSet();
+
+    /**
+     * slots which are read somewhere in program
+     */
+    private final BitSet read = new BitSet();
+
+    private JetBrainsResolver() {
+    }
+
+    /**
+     * resolve a program
+     *
+     * @param programNode Program node
+     * @return linked program
+     */
+    public static JetBrainsResolvedProgram resolve(JetBrainsAstNode programNode) {
+        if (programNode.getType() != JetBrainsAstNodeType.PROGRAM)
+            throw new IllegalArgumentException("AST-tree is not a PROGRAM!");
+        JetBrainsResolver resolver = new JetBrainsResolver();
+        JetBrainsResolvedNode root = resolver.resolveNode(programNode);
+
+        List<String> undeclared = new ArrayList<>();
+        BitSet never = (BitSet) resolver.read.clone();
+        never.andNot(resolver.assigned);
+        for (int slot = never.nextSetBit(0); slot >= 0; slot = never.nextSetBit(slot + 1))
+            undeclared.add(resolver.names.get(slot));
+        return new JetBrainsResolvedProgram(root, resolver.names.toArray(new String[0]), undeclared);
+    }
+
+    /**
+     * resolve node and its children
+     * children are resolved before their parent with an explicit stack, so nesting doesn't grow the Java call stack
+     *
+     * @param root node to resolve
+     * @return resolved node
+     */
+    private JetBrainsResolvedNode resolveNode(JetBrainsAstNode root) {
+        ArrayList<JetBrainsAstNode> nodes = new ArrayList<>();
+        // number of resolved children of every unfinished node
+        JetBrainsIntBuffer steps = new JetBrainsIntBuffer();
+        ArrayList<JetBrainsResolvedNode> resolved = new ArrayList<>();
+        nodes.add(root);
+        steps.accept(0);
+        while (!nodes.isEmpty()) {
+            JetBrainsAstNode node = nodes.get(nodes.size() - 1);
+            int step = steps.pop();
+            if (step == 0 && node.getType() == JetBrainsAstNodeType.ASSIGN_STATEMENT) {
+                // the slot is taken before the slots of the expression
+                assigned.set(slot(node.getChild(0).getText()));
+            }
+            int first = first(node);
+            if (step < count(node)) {
+                steps.accept(step + 1);
+                nodes.add(node.getChild(first + step));
+                steps.accept(0);
+                continue;
+            }
+            nodes.remove(nodes.size() - 1);
+            List<JetBrainsResolvedNode> children = resolved.subList(resolved.size() - step, resolved.size());
+            JetBrainsResolvedNode result = finish(node, children.toArray(new JetBrainsResolvedNode[0]));
+            children.clear();
+            resolved.add(result);
+        }
+        return resolved.get(0);
+    }
+
+    /**
+     * @param node node to resolve
+     * @return index of the first child which is resolved
+     */
+    private static int first(JetBrainsAstNode node) {
+        return node.getType() == JetBrainsAstNodeType.ASSIGN_STATEMENT ? 1 : 0;
+    }
+
+    /**
+     * @param node node to resolve
+     * @return number of children which are resolved
+     */
+    private static int count(JetBrainsAstNode node) {
+        switch (node.getType()) {
+            case EXPRESSION:
+            case STATEMENT:
+            case PROGRAM:
+            case BLOCK_STATEMENT:
+            case SIMPLE_EXPRESSION:
+            case ASSIGN_STATEMENT:
+            case EXPRESSION_STATEMENT:
+                return 1;
+            case CONDITION_EXPRESSION:
+            case PLUS_MINUS_EXPRESSION:
+            case MULTIPLY_DIVISION_EXPRESSION:
+            case IF_STATEMENT:
+                return 2;
+            case STATEMENT_LIST:
+                return node.childCount();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * resolve node whose children are resolved
+     *
+     * @param node     node to resolve
+     * @param children resolved children
+     * @return resolved node
+     */
+    private JetBrainsResolvedNode finish(JetBrainsAstNode node, JetBrainsResolvedNode[] children) {
+        JetBrainsAstNodeType type = node.getType();
+        switch (type) {
+            case EXPRESSION:
+            case STATEMENT:
+            case PROGRAM:
+            case BLOCK_STATEMENT:
+            case SIMPLE_EXPRESSION:
+                return children[0];
+            case INTEGER:
+                try {
+                    return new JetBrainsResolvedNode(type, Integer.parseInt(node.getText()), null);
+                } catch (NumberFormatException ex) {
+                    // the interpreter fails only when the integer is evaluated
+                    return new JetBrainsResolvedNode(type, 0, node.getText());
+                }
+            case IDENTIFIER: {
+                int slot = slot(node.getText());
+                read.set(slot);
+                return new JetBrainsResolvedNode(type, slot, null);
+            }
+            case CONDITION_EXPRESSION:
+                return new JetBrainsResolvedNode(type, node.getText().equals("<") ? '<' : '>', null, children);
+            case PLUS_MINUS_EXPRESSION:
+                return new JetBrainsResolvedNode(type, node.getText().equals("+") ? '+' : '-', null, children);
+            case MULTIPLY_DIVISION_EXPRESSION:
+                return new JetBrainsResolvedNode(type, node.getText().equals("*") ? '*' : '/', null, children);
+            case ASSIGN_STATEMENT:
+                return new JetBrainsResolvedNode(type, slot(node.getChild(0).getText()), null, children);
+            case EXPRESSION_STATEMENT:
+            case IF_STATEMENT:
+            case STATEMENT_LIST:
+                return new JetBrainsResolvedNode(type, 0, null, children);
+            default:
+                // PARSE_ERROR and unknown nodes fail only when they are executed
+                return new JetBrainsResolvedNode(type, 0, node.getText());
+        }
+    }
+
+    private int slot(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = names.size();
+            slots.put(name, slot);
+            names.add(name);
+        }
+        return slot;
+    }
+}
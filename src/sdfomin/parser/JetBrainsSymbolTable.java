@@ -0,0 +1,168 @@
+package sdfomin.parser;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of identifiers which gives every name a small int id
+ * Names are found by symbols of the source without creating strings, so every name is allocated once
+ * and all occurrences of it share one String. A table is kept for a program or for a session of the editor,
+ * names are never removed. Methods are thread-safe, known names are found without locks,
+ * so parsers of parts of one program may share a table.
+ */
+public class JetBrainsSymbolTable {
+
+    /**
+     * cells and names, a grown table replaces the whole state, so readers of the old one never see it changing
+     */
+    private static final class State {
+
+        /**
+         * open addressing table of id + 1 by hash of name, 0 for an empty cell
+         */
+        private final AtomicIntegerArray cells;
+
+        /**
+         * names by ids, the table is at most half full
+         */
+        private final AtomicReferenceArray<String> names;
+
+        private State(int capacity) {
+            cells = new AtomicIntegerArray(2 * capacity);
+            names = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private volatile State state = new State(16);
+
+    /**
+     * number of names, it's changed under the lock
+     */
+    private int size = 0;
+
+    /**
+     * hash of a part of text, the same as String.hashCode of the part
+     *
+     * @param text  text
+     * @param start position of the first symbol
+     * @param end   position after the last symbol
+     * @return hash
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; ++i)
+            hash = 31 * hash + text.charAt(i);
+        // spread higher bits to the cells
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start)
+            return false;
+        for (int i = start; i < end; ++i)
+            if (name.charAt(i - start) != text.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * find a name in a state
+     *
+     * @return cell of name if it's found, otherwise -(empty cell) - 1
+     */
+    private static int find(State state, int hash, CharSequence text, int start, int end) {
+        int mask = state.cells.length() - 1;
+        int cell = hash & mask;
+        int value;
+        // a name is written before its cell, so a found cell always has a name
+        while ((value = state.cells.get(cell)) != 0) {
+            if (equals(state.names.get(value - 1), text, start, end))
+                return cell;
+            cell = (cell + 1) & mask;
+        }
+        return -cell - 1;
+    }
+
+    /**
+     * find id of a name in a part of text, the name is added if it's new
+     *
+     * @param text  text
+     * @param start position of the first symbol of name
+     * @param end   position after the last symbol of name
+     * @return id of name
+     */
+    public int id(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        State state = this.state;
+        int cell = find(state, hash, text, start, end);
+        return cell >= 0 ? state.cells.get(cell) - 1 : add(hash, text, start, end);
+    }
+
+    /**
+     * find id of a name, the name is added if it's new
+     *
+     * @param name name
+     * @return id of name
+     */
+    public int id(String name) {
+        return id(name, 0, name.length());
+    }
+
+    /**
+     * add a name which wasn't found without the lock
+     *
+     * @return id of name
+     */
+    private synchronized int add(int hash, CharSequence text, int start, int end) {
+        // the name may be added by another thread
+        State state = this.state;
+        int cell = find(state, hash, text, start, end);
+        if (cell >= 0)
+            return state.cells.get(cell) - 1;
+        if (size == state.names.length()) {
+            state = grow(state);
+            this.state = state;
+            cell = find(state, hash, text, start, end);
+        }
+        state.names.set(size, text.subSequence(start, end).toString());
+        state.cells.set(-cell - 1, size + 1);
+        return size++;
+    }
+
+    /**
+     * @param state full state
+     * @return state of double capacity with the same names
+     */
+    private State grow(State state) {
+        State grown = new State(2 * state.names.length());
+        int mask = grown.cells.length() - 1;
+        for (int id = 0; id < size; ++id) {
+            String name = state.names.get(id);
+            grown.names.set(id, name);
+            int cell = hash(name, 0, name.length()) & mask;
+            while (grown.cells.get(cell) != 0)
+                cell = (cell + 1) & mask;
+            grown.cells.set(cell, id + 1);
+        }
+        return grown;
+    }
+
+    /**
+     * @param id id of name
+     * @return the shared instance of name
+     */
+    public String name(int id) {
+        State state = this.state;
+        String name = id >= 0 && id < state.names.length() ? state.names.get(id) : null;
+        if (name == null)
+            throw new IllegalArgumentException("Unknown symbol " + id);
+        return name;
+    }
+
+    /**
+     * @return number of names
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,236 @@
+package sdfomin.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds an edit script between two AST-trees
+ * Identical subtrees are found by structural hashes and aren't visited.
+ * Children of a node are matched as a sequence: identical children keep their places or are moved,
+ * the longest run of children kept in the same order isn't moved,
+ * other children of the same type between kept ones are compared too, the rest is deleted or inserted.
+ * Nodes which are compared later are kept on an explicit stack, so nesting doesn't grow the Java call stack.
+ * Lengths of nodes are ignored, so edits of whitespaces give an empty script.
+ */
+public class JetBrainsTreeDiff {
+
+    /**
+     * found operations
+     */
+    private final List<JetBrainsTreeEdit> edits = new ArrayList<>();
+
+    /**
+     * two nodes which take the same place and are compared later OR an edit which is added after them
+     */
+    private static final class Task {
+
+        private final JetBrainsTreeEdit edit;
+        private final JetBrainsAstNode oldNode;
+        private final JetBrainsAstNode newNode;
+        private final JetBrainsAstNode oldParent;
+        private final JetBrainsAstNode newParent;
+        private final int oldIndex;
+        private final int newIndex;
+
+        private Task(JetBrainsTreeEdit edit, JetBrainsAstNode oldNode, JetBrainsAstNode newNode,
+                     JetBrainsAstNode oldParent, JetBrainsAstNode newParent, int oldIndex, int newIndex) {
+            this.edit = edit;
+            this.oldNode = oldNode;
+            this.newNode = newNode;
+            this.oldParent = oldParent;
+            this.newParent = newParent;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+        }
+
+        private Task(JetBrainsTreeEdit edit) {
+            this(edit, null, null, null, null, 0, 0);
+        }
+    }
+
+    private JetBrainsTreeDiff() {
+    }
+
+    /**
+     * find an edit script which turns the old tree into the new one
+     *
+     * @param oldTree root of the old tree
+     * @param newTree root of the new tree
+     * @return operations, empty if trees are identical
+     */
+    public static List<JetBrainsTreeEdit> diff(JetBrainsAstNode oldTree, JetBrainsAstNode newTree) {
+        JetBrainsTreeDiff diff = new JetBrainsTreeDiff();
+        // tasks of children are pushed over tasks of the rest of the parent, so edits go in depth-first order
+        ArrayDeque<Task> tasks = new ArrayDeque<>();
+        tasks.push(new Task(null, oldTree, newTree, null, null, 0, 0));
+        while (!tasks.isEmpty()) {
+            Task task = tasks.pop();
+            if (task.edit != null) {
+                diff.edits.add(task.edit);
+                continue;
+            }
+            List<Task> children = diff.diffNode(task.oldNode, task.newNode, task.oldParent, task.newParent,
+                    task.oldIndex, task.newIndex);
+            for (int i = children.size() - 1; i >= 0; --i)
+                tasks.push(children.get(i));
+        }
+        return diff.edits;
+    }
+
+    /**
+     * compare two nodes which take the same place
+     *
+     * @param oldNode   old node
+     * @param newNode   new node
+     * @param oldParent parent of old node
+     * @param newParent parent of new node
+     * @param oldIndex  index of old node in parent
+     * @param newIndex  index of new node in parent
+     * @return comparisons of children and edits after them, in order
+     */
+    private List<Task> diffNode(JetBrainsAstNode oldNode, JetBrainsAstNode newNode,
+                          JetBrainsAstNode oldParent, JetBrainsAstNode newParent, int oldIndex, int newIndex) {
+        if (oldNode.isSameStructure(newNode))
+            return Collections.emptyList();
+        if (oldNode.getType() != newNode.getType()) {
+            edits.add(new JetBrainsTreeEdit(JetBrainsTreeEditType.DELETE, oldNode, null, oldParent, oldIndex));
+            edits.add(new JetBrainsTreeEdit(JetBrainsTreeEditType.INSERT, null, newNode, newParent, newIndex));
+            return Collections.emptyList();
+        }
+        if (!oldNode.isSameText(newNode))
+            edits.add(new JetBrainsTreeEdit(JetBrainsTreeEditType.UPDATE, oldNode, newNode, newParent, newIndex));
+        return diffChildren(oldNode, newNode);
+    }
+
+    /**
+     * match children of two nodes
+     *
+     * @param oldNode old node
+     * @param newNode new node
+     * @return comparisons of unmatched children and edits after them, in order
+     */
+    private List<Task> diffChildren(JetBrainsAstNode oldNode, JetBrainsAstNode newNode) {
+        int oldCount = oldNode.childCount();
+        int newCount = newNode.childCount();
+
+        // identical children, old children are taken in order
+        Map<Integer, ArrayDeque<Integer>> byHash = new HashMap<>();
+        for (int i = 0; i < oldCount; ++i)
+            byHash.computeIfAbsent(oldNode.getChild(i).structuralHash(), hash -> new ArrayDeque<>()).add(i);
+        int[] match = new int[newCount];
+        int[] matchedNew = new int[newCount];
+        int matched = 0;
+        for (int j = 0; j < newCount; ++j) {
+            match[j] = -1;
+            JetBrainsAstNode child = newNode.getChild(j);
+            ArrayDeque<Integer> candidates = byHash.get(child.structuralHash());
+            if (candidates == null)
+                continue;
+            for (var it = candidates.iterator(); it.hasNext(); ) {
+                int i = it.next();
+                if (oldNode.getChild(i).isSameStructure(child)) {
+                    it.remove();
+                    match[j] = i;
+                    matchedNew[matched++] = j;
+                    break;
+                }
+            }
+        }
+
+        // matched children out of the longest increasing run are moved
+        boolean[] kept = new boolean[newCount];
+        for (int j : longestIncreasing(match, Arrays.copyOf(matchedNew, matched)))
+            kept[j] = true;
+        boolean[] oldMatched = new boolean[oldCount];
+        boolean[] oldKept = new boolean[oldCount];
+        for (int j = 0; j < newCount; ++j) {
+            if (match[j] < 0)
+                continue;
+            oldMatched[match[j]] = true;
+            oldKept[match[j]] = kept[j];
+            if (!kept[j])
+                edits.add(new JetBrainsTreeEdit(JetBrainsTreeEditType.MOVE, oldNode.getChild(match[j]),
+                        newNode.getChild(j), newNode, j));
+        }
+
+        // unmatched children between two kept ones take the same place
+        List<Task> tasks = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < oldCount || j < newCount) {
+            int nextOld = i;
+            while (nextOld < oldCount && !oldKept[nextOld])
+                ++nextOld;
+            int nextNew = j;
+            while (nextNew < newCount && !kept[nextNew])
+                ++nextNew;
+
+            List<Integer> oldFree = new ArrayList<>();
+            for (int k = i; k < nextOld; ++k)
+                if (!oldMatched[k])
+                    oldFree.add(k);
+            List<Integer> newFree = new ArrayList<>();
+            for (int k = j; k < nextNew; ++k)
+                if (match[k] < 0)
+                    newFree.add(k);
+            int paired = 0;
+            while (paired < oldFree.size() && paired < newFree.size() &&
+                    oldNode.getChild(oldFree.get(paired)).getType() ==
+                            newNode.getChild(newFree.get(paired)).getType()) {
+                tasks.add(new Task(null, oldNode.getChild(oldFree.get(paired)), newNode.getChild(newFree.get(paired)),
+                        oldNode, newNode, oldFree.get(paired), newFree.get(paired)));
+                ++paired;
+            }
+            for (int k = paired; k < oldFree.size(); ++k)
+                tasks.add(new Task(new JetBrainsTreeEdit(JetBrainsTreeEditType.DELETE,
+                        oldNode.getChild(oldFree.get(k)), null, oldNode, oldFree.get(k))));
+            for (int k = paired; k < newFree.size(); ++k)
+                tasks.add(new Task(new JetBrainsTreeEdit(JetBrainsTreeEditType.INSERT, null,
+                        newNode.getChild(newFree.get(k)), newNode, newFree.get(k))));
+
+            i = nextOld + 1;
+            j = nextNew + 1;
+        }
+        return tasks;
+    }
+
+    /**
+     * find the longest run of matched new children whose old children go in the same order
+     *
+     * @param match   old index for every new child
+     * @param indices new children which are matched, in increasing order
+     * @return new children of the longest run
+     */
+    private static int[] longestIncreasing(int[] match, int[] indices) {
+        int n = indices.length;
+        // tails[k] is the position of the smallest end of a run of length k + 1
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int p = 0; p < n; ++p) {
+            int value = match[indices[p]];
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (match[indices[tails[middle]]] < value)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            previous[p] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = p;
+            if (low == length)
+                ++length;
+        }
+        int[] result = new int[length];
+        for (int p = length > 0 ? tails[length - 1] : -1, k = length - 1; p >= 0; p = previous[p], --k)
+            result[k] = indices[p];
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package sdfomin.parser;
+
+/**
+ * One operation of an edit script between two AST-trees
+ */
+public class JetBrainsTreeEdit {
+
+    /**
+     * type of operation
+     */
+    private final JetBrainsTreeEditType type;
+
+    /**
+     * node of the old tree, null for INSERT
+     */
+    private final JetBrainsAstNode oldNode;
+
+    /**
+     * node of the new tree, null for DELETE
+     */
+    private final JetBrainsAstNode newNode;
+
+    /**
+     * parent of oldNode for DELETE, otherwise parent of newNode
+     */
+    private final JetBrainsAstNode parent;
+
+    /**
+     * index of node in parent
+     */
+    private final int index;
+
+    JetBrainsTreeEdit(JetBrainsTreeEditType type, JetBrainsAstNode oldNode, JetBrainsAstNode newNode,
+                      JetBrainsAstNode parent, int index) {
+        this.type = type;
+        this.oldNode = oldNode;
+        this.newNode = newNode;
+        this.parent = parent;
+        this.index = index;
+    }
+
+    public JetBrainsTreeEditType getType() {
+        return type;
+    }
+
+    public JetBrainsAstNode getOldNode() {
+        return oldNode;
+    }
+
+    public JetBrainsAstNode getNewNode() {
+        return newNode;
+    }
+
+    /**
+     * @return parent of old node for DELETE, otherwise parent of new node
+     */
+    public JetBrainsAstNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @return index of node in parent
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case INSERT:
+                return "INSERT " + newNode.getType() + " at " + index;
+            case DELETE:
+                return "DELETE " + oldNode.getType() + " at " + index;
+            case UPDATE:
+                return "UPDATE " + oldNode + " -> " + newNode;
+            default:
+                return "MOVE " + newNode.getType() + " to " + index;
+        }
+    }
+}
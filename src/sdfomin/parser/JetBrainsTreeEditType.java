@@ -0,0 +1,8 @@
+package sdfomin.parser;
+
+public enum JetBrainsTreeEditType {
+    INSERT,
+    DELETE,
+    UPDATE,
+    MOVE
+}
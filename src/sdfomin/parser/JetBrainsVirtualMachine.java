@@ -0,0 +1,132 @@
+package sdfomin.parser;
+
+import java.util.ArrayList;
+import java.util.function.IntConsumer;
+
+import static sdfomin.parser.JetBrainsBytecode.*;
+
+/**
+ * Runs JetBrainsBytecode in one loop
+ * Gives the same output and exceptions as JetBrainsInterpreter gives for the source tree
+ */
+public class JetBrainsVirtualMachine {
+
+    /**
+     * program to run
+     */
+    private final JetBrainsBytecode bytecode;
+
+    /**
+     * output of a program
+     */
+    private final ArrayList<Integer> output = new ArrayList<>();
+
+    /**
+     * constructor
+     *
+     * @param bytecode compiled program
+     */
+    public JetBrainsVirtualMachine(JetBrainsBytecode bytecode) {
+        this.bytecode = bytecode;
+    }
+
+    /**
+     * run a program
+     *
+     * @return output of a program
+     * @throws InterpretException if program has ParseErrors
+     */
+    public ArrayList<Integer> execute() throws InterpretException {
+        execute(output::add);
+        return output;
+    }
+
+    /**
+     * run a program and pass its output to a sink as soon as it's printed
+     *
+     * @param sink receiver of output, it gets values printed before an exception too
+     * @throws InterpretException if program has ParseErrors
+     */
+    public void execute(IntConsumer sink) throws InterpretException {
+        final int[] code = bytecode.getCode();
+        final String[] texts = bytecode.getTexts();
+        final int[] stack = new int[bytecode.getMaxStack() + 1];
+        final int[] vars = new int[bytecode.slotCount()];
+        final boolean[] assigned = new boolean[vars.length];
+        int top = 0;
+        int pc = 0;
+        while (true) {
+            switch (code[pc++]) {
+                case PUSH:
+                    stack[top++] = code[pc++];
+                    break;
+                case PARSE_INT:
+                    stack[top++] = Integer.parseInt(texts[code[pc++]]);
+                    break;
+                case LOAD: {
+                    int slot = code[pc++];
+                    if (!assigned[slot])
+                        throw new InterpretException("Undeclared identifier");
+                    stack[top++] = vars[slot];
+                    break;
+                }
+                case STORE: {
+                    int slot = code[pc++];
+                    vars[slot] = stack[--top];
+                    assigned[slot] = true;
+                    break;
+                }
+                case LESS:
+                    --top;
+                    stack[top - 1] = stack[top - 1] < stack[top] ? 1 : 0;
+                    break;
+                case GREATER:
+                    --top;
+                    stack[top - 1] = stack[top - 1] > stack[top] ? 1 : 0;
+                    break;
+                case ADD:
+                    --top;
+                    stack[top - 1] += stack[top];
+                    break;
+                case SUBTRACT:
+                    --top;
+                    stack[top - 1] -= stack[top];
+                    break;
+                case MULTIPLY:
+                    --top;
+                    stack[top - 1] *= stack[top];
+                    break;
+                case DIVIDE:
+                    --top;
+                    stack[top - 1] /= stack[top];
+                    break;
+                case PRINT:
+                    sink.accept(stack[--top]);
+                    break;
+                case JUMP_IF_ZERO: {
+                    int target = code[pc++];
+                    if (stack[--top] == 0)
+                        pc = target;
+                    break;
+                }
+                case THROW:
+                    throw new InterpretException(texts[code[pc]]);
+                case HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown instruction " + code[pc - 1]);
+            }
+        }
+    }
+
+    /**
+     * run a program
+     *
+     * @param bytecode compiled program
+     * @return output of a program
+     * @throws InterpretException if program has ParseErrors
+     */
+    public static ArrayList<Integer> execute(JetBrainsBytecode bytecode) throws InterpretException {
+        return new JetBrainsVirtualMachine(bytecode).execute();
+    }
+}
@@ -0,0 +1,281 @@
+package sdfomin.runner;
+
+import sdfomin.parser.JetBrainsBatchedWriter;
+import sdfomin.parser.JetBrainsInterpreter;
+import sdfomin.parser.JetBrainsMetrics;
+import sdfomin.parser.JetBrainsParser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses and executes program files without the editor, for example in CI
+ * Every file is a separate task of a work-stealing pool, files don't share any state,
+ * so throughput grows with the number of threads. Output of a file is printed while it runs, every batch
+ * of values is a line "path: 1, 2, 3" of the output stream, an error is a line "path: message" of the error stream.
+ * Throughput and latency percentiles are printed at the end.
+ * <p>
+ * Usage: BatchRunner [-j threads] file-or-directory...
+ * Directories are searched recursively. Exit code is 0 if all files are executed, 1 if some failed, 2 on wrong usage.
+ */
+public class BatchRunner {
+
+    /**
+     * number of output values passed to the stream at once
+     */
+    static final int OUTPUT_BATCH = 1024;
+
+    /**
+     * percentiles of latency in the summary
+     */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * result of one file
+     */
+    static final class Result {
+
+        final Path path;
+
+        /**
+         * message of error or null if the program is executed
+         */
+        final String error;
+
+        /**
+         * time of reading, parsing and execution in nanoseconds
+         */
+        final long nanos;
+
+        Result(Path path, String error, long nanos) {
+            this.path = path;
+            this.error = error;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * results of all files
+     */
+    static final class Summary {
+
+        final int files;
+        final int failed;
+
+        /**
+         * time of the whole run in nanoseconds
+         */
+        final long elapsedNanos;
+
+        /**
+         * sorted latencies of files in nanoseconds
+         */
+        final long[] latencies;
+
+        Summary(int files, int failed, long elapsedNanos, long[] latencies) {
+            this.files = files;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        /**
+         * get a latency by nearest rank
+         *
+         * @param percentile from 0 to 100
+         * @return latency in nanoseconds, 0 if there are no files
+         */
+        long percentile(double percentile) {
+            if (latencies.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.max(rank, 1) - 1];
+        }
+
+        /**
+         * @return executed files per second
+         */
+        double throughput() {
+            return elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos;
+        }
+    }
+
+    private final int threads;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    /**
+     * construct a runner
+     *
+     * @param threads number of worker threads
+     * @param out     stream for output of programs and the summary
+     * @param err     stream for errors
+     */
+    public BatchRunner(int threads, PrintStream out, PrintStream err) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads should be positive");
+        this.threads = threads;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * find program files, directories are searched recursively
+     *
+     * @param paths files and directories
+     * @return regular files in the given order, files of a directory are sorted
+     * @throws IOException if a directory can't be read
+     */
+    static List<Path> collect(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(path)) {
+                files.addAll(walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * read, parse and execute one file, output is printed in batches while the program runs
+     *
+     * @param path file
+     * @return result of the file
+     */
+    Result execute(Path path) {
+        long start = System.nanoTime();
+        JetBrainsBatchedWriter writer = new JetBrainsBatchedWriter(batch -> print(path, batch), OUTPUT_BATCH);
+        String error = null;
+        try {
+            String text = Files.readString(path, Charset.defaultCharset());
+            JetBrainsInterpreter.execute(new JetBrainsParser(text).parse(), writer);
+        } catch (Exception ex) {
+            error = ex.getMessage() == null ? ex.toString() : ex.getMessage();
+        }
+        writer.close();
+        return new Result(path, error, System.nanoTime() - start);
+    }
+
+    /**
+     * execute files in parallel, results are printed in order of completion
+     *
+     * @param files program files
+     * @return summary of the run
+     */
+    Summary run(List<Path> files) {
+        long[] latencies = new long[files.size()];
+        AtomicInteger failed = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            int index = i;
+            tasks.add(() -> {
+                Result result = execute(files.get(index));
+                latencies[index] = result.nanos;
+                if (result.error != null)
+                    failed.incrementAndGet();
+                report(result);
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // invokeAll waits for all tasks, so their writes are visible here
+        Arrays.sort(latencies);
+        return new Summary(files.size(), failed.get(), elapsed, latencies);
+    }
+
+    /**
+     * print a batch of output of a file as a line, lines of different files aren't mixed
+     *
+     * @param path  file
+     * @param batch text of JetBrainsBatchedWriter
+     */
+    private synchronized void print(Path path, String batch) {
+        int start = batch.startsWith(JetBrainsBatchedWriter.SEPARATOR) ? JetBrainsBatchedWriter.SEPARATOR.length() : 0;
+        int end = batch.endsWith("\n") ? batch.length() - 1 : batch.length();
+        if (start < end)
+            out.print(path + ": " + batch.substring(start, end) + "\n");
+    }
+
+    /**
+     * print an error of a file
+     *
+     * @param result result of a file
+     */
+    private synchronized void report(Result result) {
+        if (result.error != null)
+            err.println(result.path + ": " + result.error);
+    }
+
+    /**
+     * print throughput and latency percentiles
+     *
+     * @param summary summary of the run
+     */
+    void printSummary(Summary summary) {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("Files: %d, failed: %d, time: %.3f s, throughput: %.1f files/s, latency ms:",
+                summary.files, summary.failed, summary.elapsedNanos / 1e9, summary.throughput()));
+        for (double percentile : PERCENTILES)
+            line.append(String.format(" p%.0f %.3f", percentile, summary.percentile(percentile) / 1e6));
+        line.append(String.format(" max %.3f", summary.percentile(100) / 1e6));
+        out.println(line);
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (args[i].equals("-j") && i + 1 < args.length)
+                    threads = Integer.parseInt(args[++i]);
+                else
+                    paths.add(Paths.get(args[i]));
+            }
+        } catch (NumberFormatException ex) {
+            paths.clear();
+        }
+        if (paths.isEmpty() || threads <= 0) {
+            System.err.println("Usage: BatchRunner [-j threads] file-or-directory...");
+            System.exit(2);
+        }
+
+        List<Path> files;
+        try {
+            files = collect(paths);
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        JetBrainsMetrics.install();
+        BatchRunner runner = new BatchRunner(threads, System.out, System.err);
+        Summary summary = runner.run(files);
+        runner.printSummary(summary);
+        System.exit(summary.failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,135 @@
+package sdfomin.editor;
+
+import org.junit.jupiter.api.Test;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsParseCache;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorAnalyzerTest {
+
+    private static final String PROGRAM = "@x = 1;";
+
+    private static final String WRAPPED = "@x = 1;\nif (x) { x * 2; }";
+
+    private static final long DELAY = 200;
+
+    /**
+     * check which records the parsed edits
+     */
+    private static class RecordingCheck extends EditorCheck {
+
+        final List<String> edits = new CopyOnWriteArrayList<>();
+
+        RecordingCheck() {
+            super(PROGRAM, new JetBrainsParseCache(16, 1 << 20));
+        }
+
+        @Override
+        JetBrainsAstNode parse(String text, int start, int oldLength, int newLength) {
+            edits.add(text + "|" + start + "|" + oldLength + "|" + newLength);
+            return super.parse(text, start, oldLength, newLength);
+        }
+    }
+
+    private static PlainDocument document() throws BadLocationException {
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, PROGRAM, null);
+        return document;
+    }
+
+    @Test
+    void quickEditsAreAnalyzedOnce() throws Exception {
+        PlainDocument document = document();
+        RecordingCheck check = new RecordingCheck();
+        CountDownLatch wrapped = new CountDownLatch(1);
+        EditorAnalyzer analyzer = new EditorAnalyzer(document, DELAY, check, wrapped::countDown);
+        document.addDocumentListener(analyzer);
+        try {
+            document.insertString(PROGRAM.length(), "\nif (x) { ", null);
+            document.insertString(document.getLength(), "x * 2; }", null);
+
+            analyzer.awaitIdle();
+            assertTrue(wrapped.await(10, TimeUnit.SECONDS));
+            // both edits are merged into one insertion after the old text
+            int inserted = WRAPPED.length() - PROGRAM.length();
+            assertEquals(List.of(WRAPPED + "|" + PROGRAM.length() + "|0|" + inserted), check.edits);
+        } finally {
+            document.removeDocumentListener(analyzer);
+            analyzer.close();
+        }
+    }
+
+    @Test
+    void outdatedResultIsDropped() throws Exception {
+        PlainDocument document = document();
+        RecordingCheck check = new RecordingCheck() {
+            @Override
+            JetBrainsAstNode parse(String text, int start, int oldLength, int newLength) {
+                if (text.equals(WRAPPED)) {
+                    // the text is changed back while the wrapped if is parsed
+                    try {
+                        document.replace(0, document.getLength(), PROGRAM, null);
+                    } catch (BadLocationException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+                return super.parse(text, start, oldLength, newLength);
+            }
+        };
+        AtomicInteger wrappedIfs = new AtomicInteger();
+        EditorAnalyzer analyzer = new EditorAnalyzer(document, DELAY, check, wrappedIfs::incrementAndGet);
+        document.addDocumentListener(analyzer);
+        try {
+            document.replace(0, document.getLength(), WRAPPED, null);
+
+            analyzer.awaitIdle();
+            assertEquals(2, check.edits.size());
+            assertTrue(check.edits.get(0).startsWith(WRAPPED + "|"));
+            assertTrue(check.edits.get(1).startsWith(PROGRAM + "|"));
+            assertEquals(0, wrappedIfs.get());
+        } finally {
+            document.removeDocumentListener(analyzer);
+            analyzer.close();
+        }
+    }
+
+    @Test
+    void failedAnalysisParsesWholeTextNextTime() throws Exception {
+        PlainDocument document = document();
+        AtomicInteger failures = new AtomicInteger(1);
+        RecordingCheck check = new RecordingCheck() {
+            @Override
+            JetBrainsAstNode parse(String text, int start, int oldLength, int newLength) {
+                if (failures.getAndDecrement() > 0)
+                    throw new StackOverflowError();
+                return super.parse(text, start, oldLength, newLength);
+            }
+        };
+        CountDownLatch wrapped = new CountDownLatch(1);
+        EditorAnalyzer analyzer = new EditorAnalyzer(document, DELAY, check, wrapped::countDown);
+        document.addDocumentListener(analyzer);
+        try {
+            document.insertString(PROGRAM.length(), "\n", null);
+            // the error is reported, so the analysis doesn't end with it
+            analyzer.awaitIdle();
+
+            document.insertString(document.getLength(), "if (x) { x * 2; }", null);
+            analyzer.awaitIdle();
+            assertTrue(wrapped.await(10, TimeUnit.SECONDS));
+            // the failed edit isn't recorded, the parser still has the old text
+            assertEquals(List.of(WRAPPED + "|0|" + PROGRAM.length() + "|" + WRAPPED.length()), check.edits);
+        } finally {
+            document.removeDocumentListener(analyzer);
+            analyzer.close();
+        }
+    }
+}
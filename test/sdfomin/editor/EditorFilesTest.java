@@ -0,0 +1,81 @@
+package sdfomin.editor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorFilesTest {
+
+    @Test
+    void readAndWrite() throws IOException {
+        Path directory = Files.createTempDirectory("editor");
+        Path file = directory.resolve("program.txt");
+        try {
+            Files.write(file, new byte[0]);
+            assertEquals("", EditorFiles.read(file).toString());
+
+            Files.write(file, "@x = 1;\r\nx;\rx + 1;\n".getBytes());
+            assertEquals("@x = 1;\nx;\nx + 1;\n", EditorFiles.read(file).toString());
+
+            EditorFiles.write(file, "x * 2;");
+            assertEquals("x * 2;", EditorFiles.read(file).toString());
+            // the temporary file is moved over the target
+            try (var files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void readLargeFile() throws IOException {
+        Path file = Files.createTempFile("program", ".txt");
+        try {
+            StringBuilder program = new StringBuilder();
+            while (program.length() <= EditorFiles.MAP_THRESHOLD)
+                program.append("@x = 1; x + 2;\n");
+            EditorFiles.write(file, program.toString());
+            assertEquals(program.toString(), EditorFiles.read(file).toString());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void writeNewFileWithDefaultPermissions() throws IOException {
+        Path directory = Files.createTempDirectory("editor");
+        Path plain = directory.resolve("plain.txt");
+        Path file = directory.resolve("program.txt");
+        try {
+            Files.write(plain, new byte[0]);
+            EditorFiles.write(file, "x;");
+            try {
+                assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(file));
+            } catch (UnsupportedOperationException ex) {
+                // not a POSIX file system
+            }
+        } finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void writeReplacesCharactersWhichCantBeEncoded() throws IOException {
+        Path file = Files.createTempFile("program", ".txt");
+        try {
+            // a lone surrogate can't be encoded by any charset
+            EditorFiles.write(file, "x; \uD800");
+            assertEquals("x; ?", EditorFiles.read(file).toString());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
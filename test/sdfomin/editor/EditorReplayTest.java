@@ -0,0 +1,84 @@
+package sdfomin.editor;
+
+import org.junit.jupiter.api.Test;
+import sdfomin.parser.JetBrainsAstNode;
+import sdfomin.parser.JetBrainsParseCache;
+import sdfomin.parser.JetBrainsParser;
+
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorReplayTest {
+
+    private static int events(EditorReplay replay) {
+        int events = 0;
+        for (EditorReplay.Latencies latencies : replay.getGroups().values())
+            events += latencies.size();
+        return events;
+    }
+
+    @Test
+    void replaySessions() throws BadLocationException {
+        String program = EditorSession.program(200);
+        assertTrue(program.length() > 2 * EditorReplay.FIRST_GROUP);
+
+        for (EditorSession session : new EditorSession[]{EditorSession.typing(program),
+                EditorSession.pasting(program, 7), EditorSession.deleting(program)}) {
+            EditorReplay replay = new EditorReplay(session);
+            replay.replay(session);
+            assertEquals(session.getEdits().size(), events(replay));
+            assertEquals(session.getName().equals("deleting") ? "" : program, replay.getText());
+        }
+
+        EditorSession wrapping = EditorSession.wrapping(program);
+        EditorReplay replay = new EditorReplay(wrapping);
+        replay.replay(wrapping);
+        // 50 ifs, two braces each
+        assertEquals(100, events(replay));
+        assertEquals(EditorSession.program(200).replaceAll("\\) (x\\d \\* 2;)", ") { $1 }"), replay.getText());
+        assertTrue(replay.getWrappedIfs() > 0);
+        assertTrue(replay.isWithin(Long.MAX_VALUE));
+    }
+
+    @Test
+    void groups() {
+        assertEquals(0, EditorReplay.group(0));
+        assertEquals(0, EditorReplay.group(EditorReplay.FIRST_GROUP - 1));
+        assertEquals(EditorReplay.FIRST_GROUP, EditorReplay.group(EditorReplay.FIRST_GROUP));
+        assertEquals(4096, EditorReplay.group(5000));
+    }
+
+    @Test
+    void readRecording() throws IOException, BadLocationException {
+        Path file = Files.createTempFile("session", ".txt");
+        try {
+            Files.writeString(file, "# typed by hand\ni 0 @x = 1;\\n\ni 8 x\\;\nr 8 1\ni 8 y\n");
+            EditorSession session = EditorSession.read(file);
+            assertEquals(4, session.getEdits().size());
+            EditorReplay replay = new EditorReplay(session);
+            replay.replay(session);
+            assertEquals("@x = 1;\ny;", replay.getText());
+
+            Files.writeString(file, "i x 1\n");
+            assertThrows(IllegalArgumentException.class, () -> EditorSession.read(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void undoHitsCache() {
+        JetBrainsParseCache cache = new JetBrainsParseCache(Editor.PARSE_CACHE_ENTRIES, Editor.PARSE_CACHE_BYTES);
+        EditorCheck check = new EditorCheck("@x = 1;", cache);
+        JetBrainsAstNode initial = check.parse("@x = 1;", 0, 0, 0);
+        check.parse("@x = 1; x;", 7, 0, 3);
+        assertSame(initial, check.parse("@x = 1;", 7, 3, 0));
+        // the incremental parser goes on from the cached tree
+        assertTrue(check.parse("@x = 1; y;", 7, 0, 3).isSameStructure(new JetBrainsParser("@x = 1; y;").parse()));
+        assertEquals(2, cache.getHitCount());
+    }
+}
@@ -0,0 +1,62 @@
+package sdfomin.editor;
+
+import org.junit.jupiter.api.Test;
+import sdfomin.parser.InterpretException;
+import sdfomin.parser.JetBrainsInterpreter;
+import sdfomin.parser.JetBrainsParseCache;
+import sdfomin.parser.JetBrainsParser;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorRunTest {
+
+    @Test
+    void runAndCancel() throws InterruptedException {
+        List<String> log = new CopyOnWriteArrayList<>();
+        JetBrainsParseCache cache = new JetBrainsParseCache(4, 1 << 20);
+        new EditorRun("@x = 2; x; x * 3; y;", cache, log::add, 1).run();
+        assertEquals(List.of("2", ", 6", "\n", "Undeclared identifier\n"), log);
+
+        log.clear();
+        EditorRun notStarted = new EditorRun("1;", cache, log::add, 1);
+        notStarted.cancel();
+        notStarted.run();
+        assertTrue(log.isEmpty());
+
+        int statements = 100000;
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < statements; ++i)
+            program.append("1;\n");
+        CountDownLatch started = new CountDownLatch(1);
+        EditorRun run = new EditorRun(program.toString(), cache, text -> {
+            log.add(text);
+            started.countDown();
+        }, 1);
+        Thread thread = new Thread(run);
+        thread.start();
+        started.await();
+        run.cancel();
+        thread.join();
+        assertTrue(run.isCancelled());
+        assertEquals("Run is cancelled\n", log.get(log.size() - 1));
+        assertTrue(log.size() < statements);
+    }
+
+    @Test
+    void errorPositionsAfterEdit() {
+        JetBrainsParseCache cache = new JetBrainsParseCache(4, 1 << 20);
+        EditorCheck check = new EditorCheck("@x = 1;\nx +;", cache);
+        String text = "@y = 2;\n@x = 1;\nx +;";
+        check.parse(text, 0, 0, 8);
+
+        List<String> log = new CopyOnWriteArrayList<>();
+        new EditorRun(text, cache, log::add, 1).run();
+        InterpretException fresh = assertThrows(InterpretException.class,
+                () -> JetBrainsInterpreter.execute(new JetBrainsParser(text).parse()));
+        assertEquals(fresh.getMessage() + "\n", log.get(log.size() - 1));
+    }
+}
@@ -0,0 +1,81 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsAstNodeInternerTest {
+
+    @Test
+    void sameStructure() {
+        JetBrainsAstNode first = new JetBrainsParser("@x = 1; if (x) { x + 2; }").parse();
+        JetBrainsAstNode second = new JetBrainsParser("@x = 1;\nif (x)  {x + 2;}").parse();
+        JetBrainsAstNode third = new JetBrainsParser("@x = 1; if (x) { x + 3; }").parse();
+        assertEquals(first.structuralHash(), second.structuralHash());
+        assertTrue(first.isSameStructure(second));
+        assertFalse(first.isSameStructure(third));
+    }
+
+    @Test
+    void shareRepeatedStatements() {
+        JetBrainsAstNodeInterner interner = new JetBrainsAstNodeInterner();
+        JetBrainsAstNode first = interner.intern(new JetBrainsParser("@x = 1; x + 2; x + 2; x + 2;").parse());
+        JetBrainsAstNode second = interner.intern(new JetBrainsParser("x + 2; @x = 1; x + 2; ").parse());
+
+        JetBrainsAstNode list = first.getChild(0);
+        assertSame(list.getChild(1), list.getChild(2));
+        assertSame(list.getChild(1), second.getChild(0).getChild(0));
+        assertSame(list.getChild(0), second.getChild(0).getChild(1));
+        // the last statement has no trailing whitespace, so its length is different
+        assertNotSame(list.getChild(3), second.getChild(0).getChild(2));
+        assertTrue(list.getChild(3).isSameStructure(second.getChild(0).getChild(2)));
+        try {
+            assertEquals(JetBrainsInterpreter.execute(new JetBrainsParser("@x = 1; x + 2; x + 2; x + 2;").parse()),
+                    JetBrainsInterpreter.execute(first));
+        } catch (InterpretException e) {
+            fail();
+        }
+    }
+
+    /**
+     * @param depth number of nested ifs and parentheses
+     * @param value the deepest integer
+     * @return Program node
+     */
+    static JetBrainsAstNode deepProgram(int depth, int value) {
+        StringBuilder program = new StringBuilder("@x = 1;");
+        for (int i = 0; i < depth; ++i)
+            program.append("if (x) ");
+        for (int i = 0; i < depth; ++i)
+            program.append('(');
+        program.append(value);
+        for (int i = 0; i < depth; ++i)
+            program.append(')');
+        return new JetBrainsParser(program.append(';').toString()).parse();
+    }
+
+    @Test
+    void deepTreesOnSmallStack() throws InterruptedException {
+        JetBrainsAstNode first = deepProgram(20000, 1);
+        JetBrainsAstNode second = deepProgram(20000, 1);
+        JetBrainsAstNode third = deepProgram(20000, 2);
+
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(first.isSameStructure(second));
+                result.add(first.isSameStructure(third));
+                JetBrainsAstNodeInterner interner = new JetBrainsAstNodeInterner();
+                result.add(interner.intern(first) == interner.intern(second));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        assertEquals(Arrays.asList(true, false, true), result);
+    }
+}
@@ -0,0 +1,27 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsFlatTreeTest {
+
+    private static void assertSameTree(JetBrainsAstNode expected, JetBrainsFlatTree tree, int node) {
+        assertEquals(expected.getType(), tree.getType(node));
+        assertEquals(expected.getText(), tree.getText(node));
+        assertEquals(expected.getLength(), tree.getLength(node));
+        assertEquals(expected.childCount(), tree.childCount(node));
+        for (int i = 0; i < expected.childCount(); ++i)
+            assertSameTree(expected.getChild(i), tree, tree.getChild(node, i));
+    }
+
+    @Test
+    void sameTree() {
+        JetBrainsAstNode program = new JetBrainsParser("@x = 1; if (x < 2) { x + -3; } x = ;").parse();
+        for (boolean offHeap : new boolean[]{false, true}) {
+            JetBrainsFlatTree tree = JetBrainsFlatTree.of(program, offHeap);
+            assertEquals(offHeap, tree.isOffHeap());
+            assertSameTree(program, tree, tree.getRoot());
+        }
+    }
+}
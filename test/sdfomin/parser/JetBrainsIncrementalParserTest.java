@@ -0,0 +1,115 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsIncrementalParserTest {
+
+    private static void assertSameTree(JetBrainsAstNode expected, JetBrainsAstNode actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getLength(), actual.getLength());
+        if (expected.getType() != JetBrainsAstNodeType.PARSE_ERROR)
+            assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.childCount(), actual.childCount());
+        for (int i = 0; i < expected.childCount(); ++i)
+            assertSameTree(expected.getChild(i), actual.getChild(i));
+    }
+
+    @Test
+    void wrapIfIntoBlock() {
+        String program = "@x = 1;\nif (x) x + 1;\nx * 2;";
+        JetBrainsIncrementalParser parser = new JetBrainsIncrementalParser(program);
+
+        int open = program.indexOf("x + 1");
+        program = program.substring(0, open) + "{" + program.substring(open);
+        parser.insert(program, open, 1);
+        assertSameTree(new JetBrainsParser(program).parse(), parser.getTree());
+
+        int close = program.indexOf(";", open) + 1;
+        program = program.substring(0, close) + "}" + program.substring(close);
+        parser.insert(program, close, 1);
+        assertSameTree(new JetBrainsParser(program).parse(), parser.getTree());
+    }
+
+    @Test
+    void editInsideBlockReusesOtherStatements() {
+        String program = "@a = 1;\nif (a) { a; a + 2; }\na * 3;";
+        JetBrainsIncrementalParser parser = new JetBrainsIncrementalParser(program);
+        JetBrainsAstNode first = parser.getTree().getChild(0).getChild(0);
+        JetBrainsAstNode last = parser.getTree().getChild(0).getChild(2);
+
+        int pos = program.indexOf("a + 2") + 1;
+        program = program.substring(0, pos) + program.substring(pos + 4);
+        parser.remove(program, pos, 4);
+
+        assertSameTree(new JetBrainsParser(program).parse(), parser.getTree());
+        assertSame(first, parser.getTree().getChild(0).getChild(0));
+        assertSame(last, parser.getTree().getChild(0).getChild(2));
+    }
+
+    @Test
+    void removeClosingBracket() {
+        String program = "{ 1; { 2; } 3; } 4;";
+        JetBrainsIncrementalParser parser = new JetBrainsIncrementalParser(program);
+
+        int pos = program.indexOf("}");
+        program = program.substring(0, pos) + program.substring(pos + 1);
+        parser.remove(program, pos, 1);
+        assertSameTree(new JetBrainsParser(program).parse(), parser.getTree());
+    }
+
+    @Test
+    void editsOfDifferentBlocks() {
+        String program = "{ @a = 1; }\n@b = 2;\nif (b) { b; }\n{ }\n";
+        JetBrainsIncrementalParser parser = new JetBrainsIncrementalParser(program);
+        String[] anchors = {"@a = 1;", "@a = 1;", "b; }", "{ }", "@a = 1;", "b; }"};
+        for (String anchor : anchors) {
+            int pos = program.indexOf(anchor) + 2;
+            program = program.substring(0, pos) + " if (1) b;" + program.substring(pos);
+            parser.insert(program, pos, 10);
+            JetBrainsAstNode expected = new JetBrainsParser(program).parse();
+            assertSameTree(expected, parser.getTree());
+            assertEquals(expected.structuralHash(), parser.getTree().structuralHash());
+            assertEquals(expected.getNodeCount(), parser.getTree().getNodeCount());
+            assertEquals(expected.getIfCount(), parser.getTree().getIfCount());
+            assertEquals(expected.getComplexIfCount(), parser.getTree().getComplexIfCount());
+            assertEquals(expected.getStatementCount(), parser.getTree().getStatementCount());
+        }
+    }
+
+    @Test
+    void editAtTheEndOfDeepIfsOnSmallStack() throws InterruptedException {
+        int depth = 20000;
+        StringBuilder text = new StringBuilder("@x = 1;\n");
+        for (int i = 0; i < depth; ++i)
+            text.append("if (x) ");
+        text.append("{ x; }\nx;");
+        String program = text.toString();
+        JetBrainsIncrementalParser parser = new JetBrainsIncrementalParser(program);
+
+        int offset = program.lastIndexOf('}');
+        String edited = program.substring(0, offset) + "x + 1; " + program.substring(offset);
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(parser.insert(edited, offset, "x + 1; ".length()));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+
+        assertTrue(result.get(0) instanceof JetBrainsAstNode, result.get(0).toString());
+        JetBrainsAstNode tree = (JetBrainsAstNode) result.get(0);
+        JetBrainsAstNode expected = new JetBrainsParser(edited).parse();
+        assertTrue(expected.isSameStructure(tree));
+        assertEquals(expected.getChild(0).getLength(), tree.getChild(0).getLength());
+        assertEquals(expected.getNodeCount(), tree.getNodeCount());
+        assertEquals(expected.getStatementCount(), tree.getStatementCount());
+        assertEquals(expected.getComplexIfCount(), tree.getComplexIfCount());
+    }
+}
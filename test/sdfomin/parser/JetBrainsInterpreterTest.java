@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,4 +24,113 @@ class JetBrainsInterpreterTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void executeResolved() {
+        String program1 = "@x = 10; @second = 20;\n if (second - 19) {x + 1;}" +
+                "x*second + second/x*3;";
+        JetBrainsParser parser = new JetBrainsParser(program1);
+        try {
+            JetBrainsResolvedProgram program = JetBrainsResolver.resolve(parser.parse());
+            assertEquals(2, program.slotCount());
+            ArrayList<Integer> output = JetBrainsInterpreter.execute(program);
+            assertIterableEquals(output, Arrays.asList(11, 206));
+        } catch (InterpretException e) {
+            fail();
+        }
+    }
+
+    @Test
+    void undeclaredWhenRead() throws InterpretException {
+        JetBrainsParser parser = new JetBrainsParser("@x = 1; x; if (0) y;");
+        JetBrainsResolvedProgram program = JetBrainsResolver.resolve(parser.parse());
+        assertIterableEquals(program.getUndeclared(), Arrays.asList("y"));
+        // y is never read, so the program runs like AST-tree
+        assertIterableEquals(Collections.singletonList(1), JetBrainsInterpreter.execute(program));
+
+        JetBrainsResolvedProgram read = JetBrainsResolver.resolve(new JetBrainsParser("@x = 1; x; y;").parse());
+        assertThrows(InterpretException.class, () -> JetBrainsInterpreter.execute(read));
+    }
+
+    @Test
+    void executeToSink() {
+        JetBrainsAstNode program = new JetBrainsParser("@x = 1; x; x + 1; x + 2; x + 3; x / 0;").parse();
+        JetBrainsIntBuffer buffer = new JetBrainsIntBuffer(1);
+        assertThrows(ArithmeticException.class, () -> JetBrainsInterpreter.execute(program, buffer));
+        // values printed before the exception are passed too
+        assertArrayEquals(new int[]{1, 2, 3, 4}, buffer.toArray());
+
+        StringBuilder log = new StringBuilder();
+        ArrayList<String> batches = new ArrayList<>();
+        JetBrainsBatchedWriter writer = new JetBrainsBatchedWriter(batch -> {
+            batches.add(batch);
+            log.append(batch);
+        }, 3);
+        for (int i = 0; i < buffer.size(); ++i)
+            writer.accept(buffer.get(i));
+        writer.close();
+        assertEquals("1, 2, 3, 4\n", log.toString());
+        assertIterableEquals(Arrays.asList("1, 2, 3", ", 4\n"), batches);
+    }
+
+    @Test
+    void deepProgramOnSmallStack() throws InterruptedException {
+        int depth = 50000;
+        StringBuilder program = new StringBuilder("@x = 1;");
+        for (int i = 0; i < depth; ++i)
+            program.append("if (x) {");
+        for (int i = 0; i < depth; ++i)
+            program.append("(x + ");
+        program.append('1');
+        for (int i = 0; i < depth; ++i)
+            program.append(')');
+        program.append(';');
+        for (int i = 0; i < depth; ++i)
+            program.append('}');
+        JetBrainsAstNode tree = new JetBrainsParser(program.toString()).parse();
+
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(JetBrainsInterpreter.execute(tree));
+                result.add(JetBrainsInterpreter.execute(JetBrainsResolver.resolve(tree)));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        assertEquals(Collections.singletonList(depth + 1), result.get(0));
+        assertEquals(Collections.singletonList(depth + 1), result.get(1));
+    }
+
+    @Test
+    void limitsAndCancellation() throws InterpretException {
+        JetBrainsAstNode program = new JetBrainsParser("@x = 1; x; x + 1; x + 2;").parse();
+
+        JetBrainsInterpreter limited = new JetBrainsInterpreter(program);
+        limited.setOperationLimit(12);
+        ArrayList<Integer> output = new ArrayList<>();
+        InterpretException exception = assertThrows(InterpretException.class, () -> limited.execute(output::add));
+        assertEquals("Operation limit of 12 is exceeded", exception.getMessage());
+        // the limit is exact, the first two statements take 12 nodes
+        assertEquals(Collections.singletonList(1), output);
+
+        JetBrainsInterpreter enough = new JetBrainsInterpreter(program);
+        enough.setOperationLimit(1000);
+        enough.setTimeLimit(1, TimeUnit.MINUTES);
+        assertIterableEquals(Arrays.asList(1, 2, 3), enough.execute());
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10 * JetBrainsInterpreter.CHECK_INTERVAL; ++i)
+            text.append(i).append(';');
+        JetBrainsInterpreter slow = new JetBrainsInterpreter(new JetBrainsParser(text.toString()).parse());
+        slow.setTimeLimit(1, TimeUnit.NANOSECONDS);
+        assertThrows(InterpretException.class, slow::execute);
+
+        JetBrainsInterpreter cancelled = new JetBrainsInterpreter(program);
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+        exception = assertThrows(InterpretException.class, cancelled::execute);
+        assertEquals("Run is cancelled", exception.getMessage());
+    }
+}
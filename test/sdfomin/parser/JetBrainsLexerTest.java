@@ -0,0 +1,41 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sdfomin.parser.JetBrainsLexer.*;
+
+class JetBrainsLexerTest {
+
+    private static ArrayList<Integer> kinds(String source) {
+        JetBrainsLexer lexer = new JetBrainsLexer(source);
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int i = 0; lexer.kind(i) != EOF; ++i)
+            result.add(lexer.kind(i));
+        return result;
+    }
+
+    @Test
+    void tokens() {
+        assertIterableEquals(Arrays.asList(AT, IDENTIFIER, WHITESPACE, ASSIGN, WHITESPACE, MINUS, INTEGER, SEMICOLON),
+                kinds("@x1 = -25;"));
+        assertIterableEquals(Arrays.asList(IF, IDENTIFIER, LEFT_PARENTHESIS, RIGHT_PARENTHESIS, WHITESPACE, UNKNOWN),
+                kinds("iffy()\n\t#"));
+    }
+
+    @Test
+    void positions() {
+        JetBrainsLexer lexer = new JetBrainsLexer("a + 10\u0000b", 2);
+        assertEquals(PLUS, lexer.kind(0));
+        assertEquals(2, lexer.start(0));
+        assertEquals(INTEGER, lexer.kind(2));
+        assertEquals(4, lexer.start(2));
+        assertEquals(6, lexer.end(2));
+        assertEquals(EOF, lexer.kind(3));
+        assertEquals(EOF, lexer.kind(10));
+        assertEquals(6, lexer.start(10));
+    }
+}
@@ -0,0 +1,67 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsMetricsTest {
+
+    @Test
+    void histogram() {
+        for (long value : new long[]{0, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = JetBrainsHistogram.bucket(value);
+            assertTrue(value <= JetBrainsHistogram.upperBound(bucket));
+            // the error is below 12.5%
+            assertTrue(JetBrainsHistogram.upperBound(bucket) - value <= value / 8);
+        }
+
+        JetBrainsHistogram histogram = new JetBrainsHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; ++i)
+            histogram.record(i * 1000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(5050000, histogram.getSum());
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 50000 && median <= 50000 * 9 / 8, String.valueOf(median));
+        assertEquals(100000, histogram.getPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    void stages() throws InterpretException {
+        JetBrainsMetrics metrics = JetBrainsMetrics.getInstance();
+        metrics.setEnabled(false);
+        metrics.reset();
+        new JetBrainsParser("1;").parse();
+        assertEquals(0, metrics.getParseCount());
+
+        metrics.setEnabled(true);
+        try {
+            JetBrainsAstNode program = new JetBrainsParser("@x = 2; if (x) { x * 3; } x + ; 5;").parse();
+            assertEquals(1, metrics.getParseCount());
+            assertEquals(program.getNodeCount() + 1, metrics.getParsedNodes());
+            assertEquals(1, metrics.getParseErrors());
+
+            JetBrainsParserLibrary.isTreeUpdated(program, program);
+            JetBrainsParserLibrary.isBlockStatementUpdated(program, program);
+            assertEquals(2, metrics.getCheckCount());
+
+            List<Integer> output = new ArrayList<>();
+            assertThrows(InterpretException.class, () -> JetBrainsInterpreter.execute(program, output::add));
+            assertEquals(1, metrics.getRunCount());
+            // values printed before the error are counted
+            assertEquals(1, metrics.getOutputValues());
+            assertEquals(6, output.get(0));
+            assertTrue(metrics.getEvaluatedNodes() > 0);
+            assertTrue(metrics.dump().startsWith("parse: count 1,"));
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+}
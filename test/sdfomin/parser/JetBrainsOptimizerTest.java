@@ -0,0 +1,67 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsOptimizerTest {
+
+    @Test
+    void foldConstantsAndBranches() {
+        JetBrainsAstNode program = new JetBrainsParser("if (2 * 3 > 5) 7 - 1; if (0) 1 / 0; 4 / (1 - 1);").parse();
+        JetBrainsAstNode optimized = JetBrainsOptimizer.optimize(program);
+
+        JetBrainsAstNode list = optimized.getChild(0);
+        assertEquals(2, list.childCount());
+        // if (2 * 3 > 5) 7 - 1; -> 6;
+        JetBrainsAstNode printed = list.getChild(0).getChild(0).getChild(0).getChild(0).getChild(0);
+        assertEquals(JetBrainsAstNodeType.INTEGER, printed.getType());
+        assertEquals("6", printed.getText());
+        // division by zero stays
+        assertThrows(ArithmeticException.class, () -> JetBrainsInterpreter.execute(optimized));
+    }
+
+    @Test
+    void reuseSubexpressions() {
+        String source = "@x = 10; @second = 20; x*second + 1; x*second - 2; @x = 1; x*second;";
+        JetBrainsAstNode program = new JetBrainsParser(source).parse();
+        JetBrainsAstNode optimized = JetBrainsOptimizer.optimize(program);
+
+        // one temporary variable before the first use, x*second is computed again after assignment of x
+        assertEquals(program.getChild(0).childCount() + 1, optimized.getChild(0).childCount());
+        try {
+            assertIterableEquals(Arrays.asList(201, 198, 20), JetBrainsInterpreter.execute(optimized));
+        } catch (InterpretException e) {
+            fail();
+        }
+    }
+
+    @Test
+    void longAndDeepProgramOnSmallStack() throws InterruptedException {
+        int length = 20000;
+        StringBuilder sum = new StringBuilder("x");
+        for (int i = 0; i < length; ++i)
+            sum.append(" + x * ").append(i % 10);
+        StringBuilder program = new StringBuilder("@x = 1;");
+        for (int i = 0; i < length; ++i)
+            program.append("if (x) ");
+        program.append("{ ").append(sum).append("; ").append(sum).append("; }");
+        JetBrainsAstNode tree = new JetBrainsParser(program.toString()).parse();
+
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(JetBrainsInterpreter.execute(JetBrainsOptimizer.optimize(tree)));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        int value = 1 + length / 10 * 45;
+        assertEquals(Arrays.asList(value, value), result.get(0));
+    }
+}
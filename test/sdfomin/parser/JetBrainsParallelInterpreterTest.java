@@ -0,0 +1,110 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsParallelInterpreterTest {
+
+    /**
+     * @return output and message of the exception of a run
+     */
+    private static String run(JetBrainsAstNode program, ForkJoinPool pool) {
+        List<Integer> output = new ArrayList<>();
+        try {
+            if (pool == null)
+                JetBrainsInterpreter.execute(program, output::add);
+            else
+                new JetBrainsParallelInterpreter(program, pool).execute(output::add);
+        } catch (InterpretException | RuntimeException ex) {
+            return output + " " + ex.getMessage();
+        }
+        return output.toString();
+    }
+
+    @Test
+    void collectVariables() {
+        Map<String, Integer> variables = new HashMap<>();
+        variables.put("z", 0);
+        JetBrainsIntBuffer used = new JetBrainsIntBuffer();
+        JetBrainsAstNode list = new JetBrainsParser("{ @x = y + 1; if (z) { @w = x; } } z + y;").parse().getChild(0);
+        assertTrue(JetBrainsParallelInterpreter.collect(list.getChild(0), variables, used));
+        assertEquals(Set.of("x", "y", "z", "w"), variables.keySet());
+        Set<Integer> ids = new TreeSet<>();
+        for (int i = 0; i < used.size(); ++i)
+            ids.add(used.get(i));
+        assertEquals(Set.of(0, 1, 2, 3), ids);
+
+        used.clear();
+        assertFalse(JetBrainsParallelInterpreter.collect(list.getChild(1), variables, used));
+        assertEquals(2, used.size());
+        assertEquals(4, variables.size());
+    }
+
+    @Test
+    void sameAsInterpreter() throws InterpretException {
+        StringBuilder chains = new StringBuilder();
+        for (int i = 0; i < 3000; ++i) {
+            int chain = i % 6;
+            chains.append("@x").append(chain).append(" = x").append(chain).append(" * 3 + ").append(i).append(";\n");
+            if (i == 0 || i == 1)
+                chains.append("@x").append(chain + 4).append(" = 0;\n");
+            if (i % 7 == 0)
+                chains.append("x").append(chain).append(" + x").append((chain + 1) % 6).append(";\n");
+            if (i % 11 == 0)
+                chains.append("{ x2; @x1 = x2 + 1; }\n");
+        }
+        String program = "@x0 = 1; @x1 = 2; @x2 = 3; @x3 = 4;\n" + chains;
+        String[] sources = {
+                program,
+                program + "x7;",
+                program.replace("@x3 = x3 * 3 + 153;", "@x3 = 1 / 0;"),
+                program.replace("@x0 = x0 * 3 + 150;", "@x0 = x0 + ;"),
+                "x0; " + program,
+                "@a = 1; a; @a = a + 1; a; @b = a; @a = 0; b; a;"
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String source : sources) {
+                JetBrainsAstNode tree = new JetBrainsParser(source).parse();
+                assertEquals(run(tree, null), run(tree, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(List.of(1, 2, 2), JetBrainsParallelInterpreter.execute(
+                new JetBrainsParser("@a = 1; a; @a = a + 1; a; @b = a; @a = 0; b - a;").parse()));
+    }
+
+    @Test
+    void assignmentWithoutIdentifier() {
+        String[] sources = {"@x = 1; @y = 2; x; y; @ = 1;", "@x = 1; @ = 1; @y = 2; x; y;", "@ = 1;"};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String source : sources) {
+                JetBrainsAstNode program = new JetBrainsParser(source).parse();
+                assertEquals(run(program, null), run(program, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void firstErrorInOrder() {
+        JetBrainsAstNode program = new JetBrainsParser("@x = 1; @y = 1; x; @x = x / 0; y; @y = z; y;").parse();
+        List<Integer> output = new ArrayList<>();
+        ArithmeticException ex = assertThrows(ArithmeticException.class,
+                () -> new JetBrainsParallelInterpreter(program).execute(output::add));
+        assertEquals("/ by zero", ex.getMessage());
+        assertEquals(List.of(1), output);
+    }
+}
@@ -0,0 +1,52 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsParallelParserTest {
+
+    private static void assertSameTree(JetBrainsAstNode expected, JetBrainsAstNode actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getLength(), actual.getLength());
+        assertEquals(expected.childCount(), actual.childCount());
+        for (int i = 0; i < expected.childCount(); ++i)
+            assertSameTree(expected.getChild(i), actual.getChild(i));
+    }
+
+    @Test
+    void sameAsParser() {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            program.append("@x").append(i % 7).append(" = ").append(i).append(";\n");
+            if (i % 5 == 0)
+                program.append("if (x1 < 3) { x2; { x3 * 2; } }\n");
+            if (i % 17 == 0)
+                program.append("x + ; ) ) ;\n");
+            if (i % 31 == 0)
+                program.append("{ @y = (1 + 2; y; }\n");
+        }
+        String[] sources = {program.toString(), program + "} x; y;", "{ " + program + " }", "   ", ";;;;;;"};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String source : sources)
+                for (int range : new int[]{1, 7, 64, 1000, source.length() + 1})
+                    assertSameTree(new JetBrainsParser(source).parse(),
+                            new JetBrainsParallelParser(source, new JetBrainsSymbolTable(), range).parse(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void errorPositions() {
+        String source = "1; 2; 3 4; 5; 6;";
+        JetBrainsAstNode list = new JetBrainsParallelParser(source, new JetBrainsSymbolTable(), 4).parse().getChild(0);
+        assertEquals(6, list.childCount());
+        assertEquals(8, list.getChild(2).getChild(0).getError().getOffset());
+        assertEquals(source.length(), list.getLength());
+    }
+}
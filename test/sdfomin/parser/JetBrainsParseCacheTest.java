@@ -0,0 +1,55 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsParseCacheTest {
+
+    @Test
+    void hitsAndEviction() {
+        JetBrainsParseCache cache = new JetBrainsParseCache(2, 1 << 20);
+        JetBrainsAstNode first = cache.parse("@x = 1; x;");
+        assertSame(first, cache.parse("@x = 1;" + " x;"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertTrue(first.isSameStructure(new JetBrainsParser("@x = 1; x;").parse()));
+
+        cache.parse("1;");
+        // the first text was used after "1;", so "1;" is evicted
+        assertSame(first, cache.get("@x = 1; x;"));
+        cache.parse("2;");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("1;"));
+        assertNotNull(cache.get("2;"));
+        assertEquals(3.0 / 7, cache.getHitRate());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void memoryLimit() {
+        String small = "1;";
+        String large = "1; 2; 3; 4; 5; 6; 7; 8;";
+        long smallBytes = JetBrainsParseCache.estimate(small, new JetBrainsParser(small).parse());
+        long largeBytes = JetBrainsParseCache.estimate(large, new JetBrainsParser(large).parse());
+        assertTrue(smallBytes < largeBytes);
+
+        JetBrainsParseCache cache = new JetBrainsParseCache(100, largeBytes + smallBytes);
+        cache.parse(small);
+        cache.parse(large);
+        assertEquals(largeBytes + smallBytes, cache.getBytes());
+        cache.parse("3;");
+        assertNull(cache.get(small));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getBytes() <= largeBytes + smallBytes);
+
+        // a tree larger than the cache isn't kept
+        JetBrainsParseCache tiny = new JetBrainsParseCache(100, smallBytes);
+        tiny.parse(large);
+        assertEquals(0, tiny.size());
+    }
+}
@@ -0,0 +1,47 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsParseErrorTest {
+
+    @Test
+    void errorsOfParser() {
+        JetBrainsAstNode error = new JetBrainsParser("x + 1 )").parse().getChild(0).getChild(0).getChild(0);
+        assertEquals(JetBrainsAstNodeType.PARSE_ERROR, error.getType());
+        JetBrainsParseError parseError = error.getError();
+        assertEquals(JetBrainsParseError.Code.EXPECTED, parseError.getCode());
+        assertEquals(6, parseError.getOffset());
+        assertEquals(1 << JetBrainsLexer.SEMICOLON, parseError.getExpected());
+        assertEquals("One of the strings were expected: \";\" in position 6", error.getText());
+
+        JetBrainsParseError empty = new JetBrainsParseError(JetBrainsParseError.Code.EMPTY_IF, 4, 0);
+        assertEquals("Empty \"if\" expression in position 4", empty.getMessage());
+        JetBrainsParseError twoTokens = new JetBrainsParseError(JetBrainsParseError.Code.EXPECTED, 0,
+                1 << JetBrainsLexer.RIGHT_PARENTHESIS | 1 << JetBrainsLexer.SEMICOLON);
+        assertEquals("One of the strings were expected: \")\", \";\" in position 0", twoTokens.getMessage());
+    }
+
+    @Test
+    void messagesDontChangeStructure() {
+        JetBrainsAstNode first = new JetBrainsParser("@x = ; { 1 + ; ").parse();
+        JetBrainsAstNode second = new JetBrainsParser("@x = ; { 1 + ; ").parse();
+        assertTrue(first.isSameStructure(second));
+        assertFalse(first.isSameStructure(new JetBrainsParser("@x = ;  { 1 + ; ").parse()));
+
+        // the same message as text or as error
+        JetBrainsParseError error = JetBrainsParseError.expected(JetBrainsLexer.ASSIGN, 3);
+        JetBrainsAstNode lazy = new JetBrainsAstNode(error);
+        JetBrainsAstNode built = new JetBrainsAstNode(JetBrainsAstNodeType.PARSE_ERROR, error.getMessage());
+        assertEquals(lazy.structuralHash(), built.structuralHash());
+        assertTrue(lazy.isSameStructure(built));
+
+        // a copy with interned children keeps the error
+        JetBrainsAstNodeInterner interner = new JetBrainsAstNodeInterner();
+        interner.intern(new JetBrainsAstNode(JetBrainsAstNodeType.INTEGER, "1"));
+        JetBrainsAstNode interned = interner.intern(new JetBrainsAstNode(error,
+                new JetBrainsAstNode(JetBrainsAstNodeType.INTEGER, "1")));
+        assertSame(error, interned.getError());
+    }
+}
@@ -14,4 +14,15 @@ class JetBrainsParserLibraryTest {
         JetBrainsParser parse2 = new JetBrainsParser(program2);
         assertTrue(JetBrainsParserLibrary.isBlockStatementUpdated(parse1.parse(), parse2.parse()));
     }
+
+    @Test
+    void countersMatchTraversal() {
+        JetBrainsAstNode program = new JetBrainsParser(
+                "@x = 1; if (x) { x; if (x) x; } if (x) { } { if (x) { x; } } x +;").parse();
+        assertEquals(JetBrainsParserLibrary.countDeepNodes(program,
+                node -> node.getType() == JetBrainsAstNodeType.IF_STATEMENT), program.getIfCount());
+        assertEquals(4, program.getIfCount());
+        assertEquals(2, program.getComplexIfCount());
+        assertEquals(9, JetBrainsParserLibrary.countIsTreeUpdated(program));
+    }
 }
@@ -0,0 +1,60 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsParserTest {
+
+    @Test
+    void deepNesting() {
+        int depth = 50000;
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < depth; ++i)
+            program.append("if (x) {");
+        for (int i = 0; i < depth; ++i)
+            program.append('(');
+        program.append("1");
+        for (int i = 0; i < depth; ++i)
+            program.append(')');
+        program.append(';');
+        for (int i = 0; i < depth; ++i)
+            program.append('}');
+
+        JetBrainsAstNode tree = new JetBrainsParser(program.toString()).parse();
+        assertEquals(depth, tree.getIfCount());
+        assertEquals(depth, tree.getComplexIfCount());
+        assertEquals(program.length(), tree.getChild(0).getLength());
+    }
+
+    @Test
+    void missingParenthesis() {
+        JetBrainsAstNode expression = new JetBrainsParser("(1 + (2 * 3;").parse()
+                .getChild(0).getChild(0).getChild(0).getChild(0);
+        assertEquals(JetBrainsAstNodeType.EXPRESSION, expression.getType());
+        // both parentheses aren't closed, the outer one is replaced with an error with its content
+        JetBrainsAstNode error = expression.getChild(0);
+        assertEquals(JetBrainsAstNodeType.PARSE_ERROR, error.getType());
+        assertEquals("One of the strings were expected: \")\" in position 11", error.getText());
+    }
+
+    @Test
+    void brokenRegion() {
+        JetBrainsAstNode list = new JetBrainsParser("1; ##### )))) 2;\nif (x) { ) ) } @y = 3;").parse().getChild(0);
+        // the whole region up to ";" is one statement, then recovery stops before "if" and "}"
+        assertEquals(4, list.childCount());
+        assertEquals(JetBrainsAstNodeType.PARSE_ERROR, list.getChild(1).getChild(0).getType());
+        assertEquals("##### )))) 2;\n".length(), list.getChild(1).getLength());
+        JetBrainsAstNode block = list.getChild(2).getChild(0).getChild(1).getChild(0);
+        assertEquals(1, block.getChild(0).childCount());
+        assertEquals(JetBrainsAstNodeType.ASSIGN_STATEMENT, list.getChild(3).getChild(0).getType());
+
+        StringBuilder garbage = new StringBuilder("@x = 1;");
+        for (int i = 0; i < 10000; ++i)
+            garbage.append(")#(");
+        garbage.append(';');
+        JetBrainsAstNode tree = new JetBrainsParser(garbage.toString()).parse();
+        assertEquals(2, tree.getChild(0).childCount());
+        assertTrue(tree.getNodeCount() < 20);
+    }
+}
@@ -0,0 +1,44 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsSymbolTableTest {
+
+    @Test
+    void ids() {
+        JetBrainsSymbolTable symbols = new JetBrainsSymbolTable();
+        assertEquals(0, symbols.id("x"));
+        assertEquals(1, symbols.id("@xy = 1;", 1, 3));
+        assertEquals(0, symbols.id("(x)", 1, 2));
+        assertSame(symbols.name(1), symbols.name(symbols.id("xy")));
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(i + 2, symbols.id("v" + i));
+        assertEquals(502, symbols.id("v500"));
+        assertEquals(1002, symbols.size());
+        assertThrows(IllegalArgumentException.class, () -> symbols.name(1002));
+    }
+
+    @Test
+    void sharedByParserAndInterpreter() throws InterpretException {
+        JetBrainsSymbolTable symbols = new JetBrainsSymbolTable();
+        JetBrainsAstNode first = new JetBrainsParser("@x = 2; x;", symbols).parse();
+        JetBrainsAstNode second = new JetBrainsParser("@y = 3; @x = y; x * y;", symbols).parse();
+        JetBrainsAstNode x = first.getChild(0).getChild(0).getChild(0).getChild(0);
+        JetBrainsAstNode secondX = second.getChild(0).getChild(1).getChild(0).getChild(0);
+        assertEquals(x.getSymbol(), secondX.getSymbol());
+        assertSame(x.getText(), secondX.getText());
+        assertEquals(2, symbols.size());
+
+        // the same names without symbols are found by text
+        JetBrainsAstNode list = new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT_LIST, second.getChild(0),
+                new JetBrainsAstNode(JetBrainsAstNodeType.STATEMENT, new JetBrainsAstNode(
+                        JetBrainsAstNodeType.EXPRESSION_STATEMENT, new JetBrainsAstNode(JetBrainsAstNodeType.EXPRESSION,
+                        new JetBrainsAstNode(JetBrainsAstNodeType.IDENTIFIER, "x")))));
+        assertEquals(List.of(9, 3),
+                JetBrainsInterpreter.execute(new JetBrainsAstNode(JetBrainsAstNodeType.PROGRAM, list)));
+    }
+}
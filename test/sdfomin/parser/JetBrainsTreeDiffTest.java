@@ -0,0 +1,76 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsTreeDiffTest {
+
+    private static List<JetBrainsTreeEdit> diff(String first, String second) {
+        return JetBrainsTreeDiff.diff(new JetBrainsParser(first).parse(), new JetBrainsParser(second).parse());
+    }
+
+    @Test
+    void singleOperations() {
+        assertTrue(diff("@x = 1; x + 2;", "@x = 1;\n  x+2;").isEmpty());
+
+        List<JetBrainsTreeEdit> edits = diff("@x = 1; x + 2; x;", "@x = 1; x + 3; x;");
+        assertEquals(1, edits.size());
+        assertEquals(JetBrainsTreeEditType.UPDATE, edits.get(0).getType());
+        assertEquals("2", edits.get(0).getOldNode().getText());
+        assertEquals("3", edits.get(0).getNewNode().getText());
+
+        edits = diff("@x = 1; x;", "@x = 1; if (x) { x; } x;");
+        assertEquals(1, edits.size());
+        assertEquals(JetBrainsTreeEditType.INSERT, edits.get(0).getType());
+        assertEquals(JetBrainsAstNodeType.IF_STATEMENT, edits.get(0).getNewNode().getChild(0).getType());
+        assertEquals(1, edits.get(0).getIndex());
+
+        edits = diff("@x = 1; x; x + 1;", "@x = 1; x + 1;");
+        assertEquals(1, edits.size());
+        assertEquals(JetBrainsTreeEditType.DELETE, edits.get(0).getType());
+        assertEquals(1, edits.get(0).getIndex());
+    }
+
+    @Test
+    void moveAndReplace() {
+        List<JetBrainsTreeEdit> edits = diff("@x = 1; x; x + 1; x + 2;", "@x = 1; x + 2; x; x + 1;");
+        assertEquals(1, edits.size());
+        assertEquals(JetBrainsTreeEditType.MOVE, edits.get(0).getType());
+        assertEquals(1, edits.get(0).getIndex());
+
+        // the expression statement becomes an assignment
+        edits = diff("@x = 1; x;", "@x = 1; @y = x;");
+        assertEquals(2, edits.size());
+        assertEquals(JetBrainsTreeEditType.DELETE, edits.get(0).getType());
+        assertEquals(JetBrainsAstNodeType.EXPRESSION_STATEMENT, edits.get(0).getOldNode().getType());
+        assertEquals(JetBrainsTreeEditType.INSERT, edits.get(1).getType());
+        assertEquals(JetBrainsAstNodeType.ASSIGN_STATEMENT, edits.get(1).getNewNode().getType());
+    }
+
+    @Test
+    void deepTreesOnSmallStack() throws InterruptedException {
+        JetBrainsAstNode first = JetBrainsAstNodeInternerTest.deepProgram(20000, 1);
+        JetBrainsAstNode second = JetBrainsAstNodeInternerTest.deepProgram(20000, 2);
+
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(JetBrainsTreeDiff.diff(first, second));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        assertTrue(result.get(0) instanceof List, result.get(0).toString());
+        @SuppressWarnings("unchecked")
+        List<JetBrainsTreeEdit> edits = (List<JetBrainsTreeEdit>) result.get(0);
+        assertEquals(1, edits.size());
+        assertEquals(JetBrainsTreeEditType.UPDATE, edits.get(0).getType());
+        assertEquals("2", edits.get(0).getNewNode().getText());
+    }
+}
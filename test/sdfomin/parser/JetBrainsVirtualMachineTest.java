@@ -0,0 +1,70 @@
+package sdfomin.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JetBrainsVirtualMachineTest {
+
+    @Test
+    void execute() {
+        String program1 = "@x = 10; @second = 20;\n if (second - 19) {x + 1;}" +
+                "if (x > second) { 0; } x*second + second/x*3;";
+        JetBrainsParser parser = new JetBrainsParser(program1);
+        try {
+            JetBrainsBytecode bytecode = JetBrainsCompiler.compile(parser.parse());
+            ArrayList<Integer> output = JetBrainsVirtualMachine.execute(bytecode);
+            assertIterableEquals(output, Arrays.asList(11, 206));
+            // compiled program can be run again
+            assertIterableEquals(JetBrainsVirtualMachine.execute(bytecode), Arrays.asList(11, 206));
+        } catch (InterpretException e) {
+            fail();
+        }
+    }
+
+    @Test
+    void sameErrorsAsInterpreter() {
+        JetBrainsAstNode undeclared = new JetBrainsParser("@x = 1; x + y;").parse();
+        JetBrainsAstNode parseError = new JetBrainsParser("@x = 1; if (0) x +; x = ;").parse();
+
+        for (JetBrainsAstNode program : new JetBrainsAstNode[]{undeclared, parseError}) {
+            InterpretException expected = assertThrows(InterpretException.class,
+                    () -> JetBrainsInterpreter.execute(program));
+            InterpretException actual = assertThrows(InterpretException.class,
+                    () -> JetBrainsVirtualMachine.execute(JetBrainsCompiler.compile(program)));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+        assertThrows(ArithmeticException.class,
+                () -> JetBrainsVirtualMachine.execute(JetBrainsCompiler.compile(
+                        new JetBrainsParser("@x = 0; 1 / x;").parse())));
+    }
+
+    @Test
+    void longAndDeepProgramOnSmallStack() throws InterruptedException {
+        int length = 20000;
+        StringBuilder program = new StringBuilder("@x = 1;");
+        for (int i = 0; i < length; ++i)
+            program.append("if (x) ");
+        program.append('1');
+        for (int i = 0; i < length; ++i)
+            program.append(" + 1");
+        program.append(';');
+        JetBrainsAstNode tree = new JetBrainsParser(program.toString()).parse();
+
+        ArrayList<Object> result = new ArrayList<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.add(JetBrainsVirtualMachine.execute(JetBrainsCompiler.compile(tree)));
+            } catch (Throwable e) {
+                result.add(e);
+            }
+        }, "small stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        assertEquals(Collections.singletonList(length + 1), result.get(0));
+    }
+}
@@ -0,0 +1,83 @@
+package sdfomin.runner;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRunnerTest {
+
+    @Test
+    void runDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        Path nested = Files.createDirectory(directory.resolve("nested"));
+        Path good = directory.resolve("good.txt");
+        Path bad = nested.resolve("bad.txt");
+        Path silent = directory.resolve("silent.txt");
+        try {
+            Files.writeString(good, "@x = 2;\r\nx; x * 3;");
+            Files.writeString(bad, "5; @x = ;");
+            Files.writeString(silent, "@x = 1;");
+
+            List<Path> files = BatchRunner.collect(Collections.singletonList(directory));
+            assertEquals(Arrays.asList(good, bad, silent), files);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            BatchRunner runner = new BatchRunner(2, new PrintStream(out, true), new PrintStream(err, true));
+            BatchRunner.Summary summary = runner.run(files);
+
+            assertEquals(3, summary.files);
+            assertEquals(1, summary.failed);
+            assertEquals(3, summary.latencies.length);
+            assertTrue(summary.percentile(50) <= summary.percentile(100));
+            assertEquals(summary.latencies[2], summary.percentile(100));
+
+            List<String> lines = Arrays.asList(out.toString().split("\n"));
+            assertEquals(2, lines.size());
+            assertTrue(lines.contains(good + ": 2, 6"));
+            // output printed before an error is kept
+            assertTrue(lines.contains(bad + ": 5"));
+            assertTrue(err.toString().startsWith(bad + ": "));
+        } finally {
+            Files.deleteIfExists(bad);
+            Files.deleteIfExists(nested);
+            Files.deleteIfExists(good);
+            Files.deleteIfExists(silent);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void outputInBatches() throws IOException {
+        Path file = Files.createTempFile("batch", ".txt");
+        try {
+            int values = 2 * BatchRunner.OUTPUT_BATCH + 1;
+            Files.writeString(file, "1;\n".repeat(values));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PrintStream err = new PrintStream(new ByteArrayOutputStream());
+            BatchRunner runner = new BatchRunner(1, new PrintStream(out, true), err);
+            assertNull(runner.execute(file).error);
+
+            String[] lines = out.toString().split("\n");
+            assertEquals(3, lines.length);
+            int count = 0;
+            for (String line : lines) {
+                assertTrue(line.startsWith(file + ": 1"));
+                count += line.substring(file.toString().length() + 2).split(", ").length;
+            }
+            assertEquals(values, count);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}